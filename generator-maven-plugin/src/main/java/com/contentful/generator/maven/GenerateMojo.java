@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator.maven;
+
+import com.contentful.generator.ClientFactory;
+import com.contentful.generator.ContentTypeSource;
+import com.contentful.generator.Generator;
+import com.contentful.generator.GeneratorException;
+import com.contentful.generator.SnapshotContentTypeSource;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates models for the content types of a space or snapshot, and adds them to the compile
+ * source roots of the project.
+ * <p>
+ * Generation is skipped when none of its inputs changed since the previous build and all sources
+ * it generated still exist. Inputs are the configuration, and either the contents of
+ * {@link #snapshot} or the given {@link #fingerprint}. Without those the content types of a space
+ * are fetched on every build, but only models of changed content types are rewritten.
+ */
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
+public class GenerateMojo extends AbstractMojo {
+  static final String INPUTS_FILE = ".generator-inputs";
+
+  /** Space to fetch content types from, unless {@link #snapshot} is set */
+  @Parameter(property = "contentful.space")
+  String space;
+
+  @Parameter(property = "contentful.environment", defaultValue = "master")
+  String environment;
+
+  /** Management api access token, not part of the inputs */
+  @Parameter(property = "contentful.token")
+  String token;
+
+  @Parameter(property = "contentful.package", required = true)
+  String packageName;
+
+  /** Snapshot to generate models from instead of fetching them */
+  @Parameter(property = "contentful.snapshot")
+  File snapshot;
+
+  /**
+   * Identifies the content types of {@link #space}, like a schema version or the hash of a
+   * migration script. Allows skipping unchanged spaces without fetching their content types.
+   */
+  @Parameter(property = "contentful.fingerprint")
+  String fingerprint;
+
+  /** Maximum number of content types fetched with a single request */
+  @Parameter(property = "contentful.pageSize", defaultValue = "100")
+  int pageSize;
+
+  @Parameter(property = "contentful.includes")
+  List<String> includes;
+
+  @Parameter(property = "contentful.excludes")
+  List<String> excludes;
+
+  @Parameter(property = "contentful.singleFile")
+  String singleFile;
+
+  @Parameter(property = "contentful.threads", defaultValue = "1")
+  int threads;
+
+  @Parameter(property = "contentful.outputDirectory",
+      defaultValue = "${project.build.directory}/generated-sources/contentful")
+  File outputDirectory;
+
+  /** Keeps fetched responses for revalidation on the next build */
+  @Parameter(property = "contentful.cacheDirectory",
+      defaultValue = "${project.build.directory}/contentful-cache")
+  File cacheDirectory;
+
+  /** Generate even if the inputs did not change */
+  @Parameter(property = "contentful.force", defaultValue = "false")
+  boolean force;
+
+  @Parameter(property = "contentful.skip", defaultValue = "false")
+  boolean skip;
+
+  @Parameter(defaultValue = "${plugin.version}", readonly = true)
+  String pluginVersion;
+
+  @Parameter(defaultValue = "${project}", readonly = true, required = true)
+  MavenProject project;
+
+  @Override public void execute() throws MojoExecutionException {
+    if (skip) {
+      getLog().info("Skipping model generation.");
+      return;
+    }
+    if (snapshot == null && (space == null || token == null)) {
+      throw new MojoExecutionException("Either snapshot, or space and token must be set.");
+    }
+
+    project.addCompileSourceRoot(outputDirectory.getPath());
+
+    File inputsFile = new File(outputDirectory, INPUTS_FILE);
+    String inputs = inputs();
+    if (!force && inputs != null && isUpToDate(inputsFile, inputs)) {
+      getLog().info("Models are up to date.");
+      return;
+    }
+
+    ClientFactory factory = new ClientFactory().setCacheDirectory(cacheDirectory);
+    try {
+      ContentTypeSource source = snapshot == null
+          ? factory.createStreamingSource(space, environment, token, pageSize)
+          : new SnapshotContentTypeSource(snapshot);
+
+      new Generator(null, new Generator.Printer() {
+        @Override public void print(String text) {
+          getLog().info(text);
+        }
+      })
+          .setThreads(threads)
+          .setIncremental(true)
+          .setIncludes(includes)
+          .setExcludes(excludes)
+          .setSingleFile(singleFile)
+          .generate(packageName, outputDirectory.getPath(), source);
+
+      if (inputs == null) {
+        inputsFile.delete();
+      } else {
+        // Nothing is written into the output directory if no content type was generated
+        Files.createParentDirs(inputsFile);
+        List<String> lines = new ArrayList<String>();
+        lines.add(inputs);
+        lines.addAll(outputs(outputDirectory));
+        Files.asCharSink(inputsFile, Charsets.UTF_8).writeLines(lines);
+      }
+    } catch (GeneratorException e) {
+      throw new MojoExecutionException("Failed to generate models.", e);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Failed to store generator inputs.", e);
+    } finally {
+      factory.close();
+    }
+  }
+
+  /**
+   * Hash of everything the generated sources depend on, or null if the content types of a space
+   * are only known after fetching them.
+   */
+  String inputs() throws MojoExecutionException {
+    if (snapshot == null && fingerprint == null) {
+      return null;
+    }
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Object value : Arrays.asList(pluginVersion, space, environment, packageName,
+        fingerprint, includes, excludes, singleFile)) {
+      hasher.putString(String.valueOf(value), Charsets.UTF_8).putByte((byte) 0);
+    }
+    if (snapshot != null) {
+      try {
+        putSnapshot(hasher, snapshot);
+      } catch (IOException e) {
+        throw new MojoExecutionException("Failed to read snapshot " + snapshot + ".", e);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  static void putSnapshot(Hasher hasher, File file) throws IOException {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        Arrays.sort(children);
+        for (File child : children) {
+          hasher.putString(child.getName(), Charsets.UTF_8).putByte((byte) 0);
+          putSnapshot(hasher, child);
+        }
+      }
+    } else {
+      hasher.putBytes(Files.toByteArray(file));
+    }
+  }
+
+  /**
+   * Whether the inputs file holds the given inputs, followed by the paths of the generated files,
+   * and all of those files still exist.
+   */
+  boolean isUpToDate(File inputsFile, String inputs) throws MojoExecutionException {
+    if (!inputsFile.isFile()) {
+      return false;
+    }
+    List<String> lines;
+    try {
+      lines = Files.asCharSource(inputsFile, Charsets.UTF_8).readLines();
+    } catch (IOException e) {
+      throw new MojoExecutionException("Failed to read generator inputs.", e);
+    }
+    if (lines.isEmpty() || !inputs.equals(lines.get(0))) {
+      return false;
+    }
+    for (String path : lines.subList(1, lines.size())) {
+      if (!new File(outputDirectory, path).isFile()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Sorted paths of all files below the directory, relative to it, except the inputs file. */
+  static List<String> outputs(File directory) {
+    List<String> paths = new ArrayList<String>();
+    for (File file : Files.fileTraverser().depthFirstPreOrder(directory)) {
+      if (file.isFile() && !file.getName().equals(INPUTS_FILE)) {
+        paths.add(directory.toURI().relativize(file.toURI()).getPath());
+      }
+    }
+    Collections.sort(paths);
+    return paths;
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator.maven;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class GenerateMojoTests {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  GenerateMojo mojo;
+  File model;
+  File inputsFile;
+
+  @Before public void setUp() throws Exception {
+    File snapshot = temporaryFolder.newFile("content_types.json");
+    copy("all_content_types.json", snapshot);
+
+    mojo = new GenerateMojo();
+    mojo.snapshot = snapshot;
+    mojo.environment = "master";
+    mojo.packageName = "com.example";
+    mojo.pageSize = 100;
+    mojo.threads = 1;
+    mojo.outputDirectory = new File(temporaryFolder.getRoot(), "generated-sources");
+    mojo.cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+    mojo.project = new MavenProject();
+
+    model = new File(mojo.outputDirectory, "com/example/Model.java");
+    inputsFile = new File(mojo.outputDirectory, GenerateMojo.INPUTS_FILE);
+  }
+
+  @Test public void testGenerates() throws Exception {
+    mojo.execute();
+
+    assertThat(model.isFile()).isTrue();
+    assertThat(inputsFile.isFile()).isTrue();
+    assertThat(mojo.project.getCompileSourceRoots()).contains(mojo.outputDirectory.getPath());
+  }
+
+  @Test public void testSkipsUnchangedInputs() throws Exception {
+    mojo.execute();
+    Files.asCharSink(model, Charsets.UTF_8).write("edited");
+
+    mojo.project = new MavenProject();
+    mojo.execute();
+
+    assertThat(read(model)).isEqualTo("edited");
+    assertThat(mojo.project.getCompileSourceRoots()).contains(mojo.outputDirectory.getPath());
+  }
+
+  @Test public void testRegeneratesDeletedModel() throws Exception {
+    mojo.execute();
+    assertThat(model.delete()).isTrue();
+
+    mojo.execute();
+
+    assertThat(model.isFile()).isTrue();
+  }
+
+  @Test public void testRegeneratesCleanedSources() throws Exception {
+    mojo.execute();
+    // The generated sources are gone, but the inputs file was left behind
+    MoreFiles.deleteRecursively(new File(mojo.outputDirectory, "com").toPath());
+
+    mojo.execute();
+
+    assertThat(model.isFile()).isTrue();
+    assertThat(new File(model.getParentFile(), ".generator-manifest").isFile()).isTrue();
+  }
+
+  @Test public void testRegeneratesChangedSnapshot() throws Exception {
+    mojo.execute();
+    assertThat(read(model)).doesNotContain("fieldSymbol");
+
+    copy("all_content_types_updated.json", mojo.snapshot);
+    mojo.execute();
+
+    assertThat(read(model)).contains("fieldSymbol");
+  }
+
+  @Test public void testRegeneratesChangedConfiguration() throws Exception {
+    mojo.execute();
+
+    mojo.singleFile = "Models";
+    mojo.execute();
+
+    assertThat(model.exists()).isFalse();
+    assertThat(new File(model.getParentFile(), "Models.java").isFile()).isTrue();
+  }
+
+  @Test public void testRegeneratesWhenForced() throws Exception {
+    mojo.execute();
+    assertThat(model.delete()).isTrue();
+
+    mojo.force = true;
+    mojo.execute();
+
+    assertThat(model.isFile()).isTrue();
+  }
+
+  @Test public void testSkipsUnchangedFingerprint() throws Exception {
+    mojo.snapshot = null;
+    mojo.space = "space";
+    mojo.token = "token";
+    mojo.fingerprint = "v1";
+    assertThat(mojo.outputDirectory.mkdirs()).isTrue();
+    Files.asCharSink(inputsFile, Charsets.UTF_8).write(mojo.inputs());
+
+    // Would fail fetching the content types of a space that does not exist
+    mojo.execute();
+
+    assertThat(model.exists()).isFalse();
+    assertThat(mojo.project.getCompileSourceRoots()).contains(mojo.outputDirectory.getPath());
+  }
+
+  @Test public void testStoresInputsWithoutModels() throws Exception {
+    mojo.excludes = Collections.singletonList("*");
+    mojo.execute();
+
+    assertThat(model.exists()).isFalse();
+    assertThat(inputsFile.isFile()).isTrue();
+  }
+
+  @Test public void testSkip() throws Exception {
+    mojo.skip = true;
+    mojo.execute();
+
+    assertThat(mojo.outputDirectory.exists()).isFalse();
+    assertThat(mojo.project.getCompileSourceRoots()).isEmpty();
+  }
+
+  @Test(expected = MojoExecutionException.class)
+  public void testRequiresSnapshotOrSpace() throws Exception {
+    mojo.snapshot = null;
+    mojo.execute();
+  }
+
+  static String read(File file) throws Exception {
+    return Files.asCharSource(file, Charsets.UTF_8).read();
+  }
+
+  /** Copies a test resource of the generator, which this module shares. */
+  static void copy(String resourceFileName, File target) throws Exception {
+    Files.copy(new File("../src/test/resources/" + resourceFileName), target);
+  }
+}
@@ -0,0 +1,33 @@
+#!/bin/sh
+#
+# Creates an AppCDS archive for the command line jar built with ./mvnw -Pcli package.
+#
+# The list of classes to archive is captured from a representative run: generating the models
+# of src/test/resources/all_content_types.json, served by a local mock of the Management API.
+# Requires JDK 11 or newer and python3 for the mock.
+#
+# Usage: scripts/appcds.sh [cli jar]
+set -e
+
+JAR=${1:-$(ls target/generator-*-cli.jar | head -n 1)}
+ARCHIVE=${JAR%.jar}.jsa
+PORT=${APPCDS_MOCK_PORT:-8089}
+WORK=$(mktemp -d)
+trap 'kill $MOCK 2>/dev/null; rm -rf "$WORK"' EXIT
+
+# The mock ignores query parameters, so every page request receives the same response
+mkdir -p "$WORK/mock/spaces/space/environments/master"
+cp src/test/resources/all_content_types.json \
+    "$WORK/mock/spaces/space/environments/master/content_types"
+python3 -m http.server "$PORT" --bind 127.0.0.1 --directory "$WORK/mock" >/dev/null 2>&1 &
+MOCK=$!
+sleep 1
+
+java -Xshare:off -XX:DumpLoadedClassList="$WORK/classes.lst" -jar "$JAR" \
+    --endpoint "http://127.0.0.1:$PORT/" -s space -t token \
+    -p com.example.models -f "$WORK/out"
+
+java -Xshare:dump -XX:SharedClassListFile="$WORK/classes.lst" \
+    -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR"
+
+echo "Created $ARCHIVE, run with: java -XX:SharedArchiveFile=$ARCHIVE -jar $JAR ..."
@@ -0,0 +1,27 @@
+#!/bin/sh
+#
+# Compares the wall time of generating from a snapshot with and without the AppCDS archive
+# created by scripts/appcds.sh.
+#
+# Usage: scripts/startup.sh [cli jar] [runs]
+set -e
+
+JAR=${1:-$(ls target/generator-*-cli.jar | head -n 1)}
+ARCHIVE=${JAR%.jar}.jsa
+RUNS=${2:-10}
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+measure() {
+  start=$(date +%s%N)
+  i=0
+  while [ $i -lt "$RUNS" ]; do
+    java "$@" -jar "$JAR" --snapshot src/test/resources/all_content_types.json \
+        -p com.example.models -f "$WORK/out" >/dev/null
+    i=$((i + 1))
+  done
+  echo $(( ($(date +%s%N) - start) / RUNS / 1000000 ))
+}
+
+echo "Without AppCDS: $(measure -Xshare:auto) ms per run"
+echo "With AppCDS:    $(measure -XX:SharedArchiveFile="$ARCHIVE") ms per run"
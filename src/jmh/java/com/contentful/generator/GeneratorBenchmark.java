@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.Constants;
+import com.contentful.java.cma.model.CMAContentType;
+import com.contentful.java.cma.model.CMAField;
+import com.google.common.base.CaseFormat;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generation pipeline against synthetic spaces, without network or disk access.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+  static final String PACKAGE = "com.contentful.generator.benchmark";
+
+  @Param({"10", "100", "1000"})
+  int contentTypes;
+
+  @Param({"5", "50"})
+  int fields;
+
+  SyntheticSpace space;
+  Generator generator;
+  Run run;
+  List<CMAField> allFields;
+  List<String> fieldIds;
+  List<String> fieldNames;
+  List<List<Map<String, Object>>> validations;
+  List<Schema> schemas;
+
+  @Setup public void setUp() throws Exception {
+    space = new SyntheticSpace(contentTypes, fields, Generator.DEFAULT_PAGE_SIZE);
+    generator = new Generator(new NoOpFileHandler(), new NoOpPrinter());
+    run = new Run(PACKAGE, "unused");
+
+    allFields = new ArrayList<CMAField>();
+    fieldIds = new ArrayList<String>();
+    fieldNames = new ArrayList<String>();
+    validations = new ArrayList<List<Map<String, Object>>>();
+    schemas = new ArrayList<Schema>();
+    for (CMAContentType contentType : space.contentTypes) {
+      schemas.add(Schema.of(contentType));
+      run.models.put(contentType.getId(),
+          Generator.normalize(contentType.getName(), CaseFormat.UPPER_CAMEL));
+
+      for (CMAField field : contentType.getFields()) {
+        allFields.add(field);
+        fieldIds.add(field.getId());
+        fieldNames.add(Generator.normalize(field.getId(), CaseFormat.LOWER_CAMEL));
+        if (field.getType() == Constants.CMAFieldType.Link && field.getValidations() != null) {
+          validations.add(field.getValidations());
+        }
+      }
+    }
+  }
+
+  @Benchmark public void generate() {
+    generator.generate(PACKAGE, "unused", space);
+  }
+
+  @Benchmark public void generateModel(Blackhole blackhole) throws Exception {
+    for (CMAContentType contentType : space.contentTypes) {
+      JavaFile javaFile = generator.generateModel(run, contentType,
+          run.models.get(contentType.getId()));
+      blackhole.consume(javaFile);
+    }
+  }
+
+  @Benchmark public void generateModelFromSchema(Blackhole blackhole) throws Exception {
+    for (Schema schema : schemas) {
+      blackhole.consume(generator.generateModel(run, schema, schema.className));
+    }
+  }
+
+  @Benchmark public void schema(Blackhole blackhole) {
+    for (CMAContentType contentType : space.contentTypes) {
+      blackhole.consume(Schema.of(contentType));
+    }
+  }
+
+  @Benchmark public void createFieldSpec(Blackhole blackhole) {
+    for (int i = 0; i < allFields.size(); i++) {
+      FieldSpec fieldSpec =
+          generator.createFieldSpec(run, allFields.get(i), fieldNames.get(i), "parent");
+      blackhole.consume(fieldSpec);
+    }
+  }
+
+  @Benchmark public void normalize(Blackhole blackhole) {
+    for (String id : fieldIds) {
+      blackhole.consume(Generator.normalize(id, CaseFormat.LOWER_CAMEL));
+      blackhole.consume(Generator.normalize(id, CaseFormat.UPPER_CAMEL));
+    }
+  }
+
+  @Benchmark public void normalizeUncached(Blackhole blackhole) {
+    for (String id : fieldIds) {
+      blackhole.consume(Generator.normalizeUncached(id, CaseFormat.LOWER_CAMEL));
+      blackhole.consume(Generator.normalizeUncached(id, CaseFormat.UPPER_CAMEL));
+    }
+  }
+
+  /**
+   * Baseline for {@link #normalize}, the regex based implementation it replaced.
+   */
+  @Benchmark public void normalizeRegex(Blackhole blackhole) {
+    for (String id : fieldIds) {
+      blackhole.consume(normalizeRegex(id, CaseFormat.LOWER_CAMEL));
+      blackhole.consume(normalizeRegex(id, CaseFormat.UPPER_CAMEL));
+    }
+  }
+
+  @Benchmark public void extractSingleLinkContentType(Blackhole blackhole) {
+    for (List<Map<String, Object>> v : validations) {
+      blackhole.consume(Generator.extractSingleLinkContentType(v));
+    }
+  }
+
+  static String normalizeRegex(String name, CaseFormat format) {
+    String normalized = name.substring(0, 1).toLowerCase();
+    if (name.length() > 1) {
+      normalized += name.substring(1);
+    }
+    return CaseFormat.LOWER_CAMEL.to(format, normalized.replaceAll("[^\\w\\d]", ""));
+  }
+
+  static final class NoOpFileHandler implements Generator.FileHandler {
+    @Override public void write(JavaFile javaFile, String path) {
+    }
+
+    @Override public boolean delete(File file) {
+      return false;
+    }
+  }
+
+  static final class NoOpPrinter implements Generator.Printer {
+    @Override public void print(String text) {
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.model.CMAContentType;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory space of synthetic content types, covering every field type and links between
+ * content types.
+ */
+final class SyntheticSpace implements ContentTypeSource {
+  static final String[] FIELD_TYPES = {
+      "Symbol", "Text", "Integer", "Number", "Boolean", "Date", "Location", "Object",
+      "Link:Asset", "Link:Entry", "Array:Symbol", "Array:Asset", "Array:Entry"
+  };
+
+  final List<CMAContentType> contentTypes;
+  final int pageSize;
+
+  SyntheticSpace(int contentTypeCount, int fieldCount, int pageSize) {
+    this.contentTypes = new ArrayList<CMAContentType>(contentTypeCount);
+    this.pageSize = pageSize;
+    for (int i = 0; i < contentTypeCount; i++) {
+      contentTypes.add(SnapshotContentTypeSource.GSON.fromJson(
+          contentType(i, contentTypeCount, fieldCount), CMAContentType.class));
+    }
+  }
+
+  @Override public void read(PageConsumer consumer) throws Exception {
+    for (int i = 0; i < contentTypes.size(); i += pageSize) {
+      consumer.onPage(new ArrayList<CMAContentType>(
+          contentTypes.subList(i, Math.min(i + pageSize, contentTypes.size()))));
+    }
+  }
+
+  static String id(int index) {
+    return "contentType" + index;
+  }
+
+  static JsonObject contentType(int index, int contentTypeCount, int fieldCount) {
+    JsonArray fields = new JsonArray();
+    for (int i = 0; i < fieldCount; i++) {
+      String[] type = FIELD_TYPES[i % FIELD_TYPES.length].split(":");
+      JsonObject field = new JsonObject();
+      field.addProperty("id", "field-" + i + "_" + type[0].toLowerCase());
+      field.addProperty("name", "Field " + i);
+      field.addProperty("type", type[0]);
+
+      // Link to the next content type, wrapping around so links cross page boundaries
+      String target = id((index + i + 1) % contentTypeCount);
+      if ("Link".equals(type[0])) {
+        field.addProperty("linkType", type[1]);
+        if ("Entry".equals(type[1])) {
+          field.add("validations", linkValidations(target));
+        }
+      } else if ("Array".equals(type[0])) {
+        JsonObject items = new JsonObject();
+        if ("Symbol".equals(type[1])) {
+          items.addProperty("type", "Symbol");
+        } else {
+          items.addProperty("type", "Link");
+          items.addProperty("linkType", type[1]);
+          if ("Entry".equals(type[1])) {
+            items.add("validations", linkValidations(target));
+          }
+        }
+        field.add("items", items);
+      }
+      fields.add(field);
+    }
+
+    JsonObject sys = new JsonObject();
+    sys.addProperty("id", id(index));
+    sys.addProperty("type", "ContentType");
+    sys.addProperty("version", 1);
+
+    JsonObject contentType = new JsonObject();
+    contentType.addProperty("name", "Content Type " + index);
+    contentType.add("fields", fields);
+    contentType.add("sys", sys);
+    return contentType;
+  }
+
+  static JsonArray linkValidations(String target) {
+    JsonArray linkContentType = new JsonArray();
+    linkContentType.add(target);
+
+    JsonObject validation = new JsonObject();
+    validation.add("linkContentType", linkContentType);
+
+    JsonArray validations = new JsonArray();
+    validations.add(validation);
+    return validations;
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates models for many spaces and environments in one process.
+ * <p>
+ * Targets are read from a JSON file:
+ * <pre>{@code
+ * {
+ *   "token": "<default management api access token>",
+ *   "targets": [
+ *     {"space": "<space id>", "environment": "master", "package": "com.example", "folder": "src"}
+ *   ]
+ * }
+ * }</pre>
+ * {@code environment} defaults to {@code master}, each target may override {@code token}.
+ */
+public class Batch {
+  final List<Target> targets;
+
+  public Batch(List<Target> targets) {
+    this.targets = Collections.unmodifiableList(new ArrayList<Target>(targets));
+  }
+
+  /**
+   * Read a batch configuration file.
+   *
+   * @param file         configuration file
+   * @param defaultToken token used for targets which do not configure one, may be null
+   * @return batch of all configured targets
+   */
+  public static Batch load(File file, String defaultToken) throws IOException {
+    Reader reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
+    Config config;
+    try {
+      config = new Gson().fromJson(reader, Config.class);
+    } finally {
+      reader.close();
+    }
+
+    if (config == null || config.targets == null || config.targets.isEmpty()) {
+      throw new GeneratorException("Batch configuration \"" + file + "\" has no targets.");
+    }
+
+    String token = config.token == null ? defaultToken : config.token;
+    for (Target target : config.targets) {
+      if (target.environment == null) {
+        target.environment = "master";
+      }
+      if (target.token == null) {
+        target.token = token;
+      }
+      if (target.space == null || target.pkg == null || target.folder == null
+          || target.token == null) {
+        throw new GeneratorException("Batch target " + target
+            + " needs a space, package, folder and token.");
+      }
+    }
+    return new Batch(config.targets);
+  }
+
+  /**
+   * Generate all targets, at most {@code threads} at a time. Every target gets its own copy of
+   * {@code template}, and a client sharing the connections of {@code clients}. Failing targets
+   * do not stop the others.
+   *
+   * @param template generator whose configuration is used for every target
+   * @param clients  factory for the management api clients
+   * @param threads  maximum number of targets generated concurrently
+   * @return results of all targets, in configuration order
+   */
+  public List<Result> generate(final Generator template, final ClientFactory clients,
+                               int threads) {
+    final Generator.Printer printer = template.printer;
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, targets.size()));
+    try {
+      List<Future<Result>> futures = new ArrayList<Future<Result>>();
+      for (final Target target : targets) {
+        futures.add(executor.submit(new Callable<Result>() {
+          @Override public Result call() {
+            Generator generator = template.copy(new PrefixPrinter(printer, "[" + target + "] "));
+            long start = System.nanoTime();
+            Exception error = null;
+            try {
+              generator.generate(target.pkg, target.folder,
+                  clients.create(target.space, target.environment, target.token));
+            } catch (Exception e) {
+              error = e;
+            }
+            return new Result(target, error, (System.nanoTime() - start) / 1000000);
+          }
+        }));
+      }
+
+      List<Result> results = new ArrayList<Result>();
+      int failed = 0;
+      for (Future<Result> future : futures) {
+        Result result = Generator.await(future);
+        results.add(result);
+        if (result.error != null) {
+          failed++;
+        }
+      }
+
+      for (Result result : results) {
+        printer.print(result.toString());
+      }
+      printer.print(String.format("Generated %d targets, %d failed.",
+          results.size() - failed, failed));
+      return results;
+    } catch (Exception e) {
+      throw new GeneratorException(e);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  static final class Config {
+    String token;
+    List<Target> targets;
+  }
+
+  public static final class Target {
+    String space;
+    String environment;
+    @SerializedName("package") String pkg;
+    String folder;
+    String token;
+
+    Target() {
+    }
+
+    public Target(String space, String environment, String pkg, String folder, String token) {
+      this.space = space;
+      this.environment = environment;
+      this.pkg = pkg;
+      this.folder = folder;
+      this.token = token;
+    }
+
+    @Override public String toString() {
+      return space + "/" + environment + " -> " + pkg;
+    }
+  }
+
+  public static final class Result {
+    public final Target target;
+    public final Exception error;
+    public final long millis;
+
+    Result(Target target, Exception error, long millis) {
+      this.target = target;
+      this.error = error;
+      this.millis = millis;
+    }
+
+    @Override public String toString() {
+      return (error == null ? "OK     " : "FAILED ") + target + " (" + millis + "ms)"
+          + (error == null ? "" : ": " + error.getMessage());
+    }
+  }
+
+  static final class PrefixPrinter implements Generator.Printer {
+    final Generator.Printer delegate;
+    final String prefix;
+
+    PrefixPrinter(Generator.Printer delegate, String prefix) {
+      this.delegate = delegate;
+      this.prefix = prefix;
+    }
+
+    @Override public void print(String text) {
+      delegate.print(prefix + text);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.CMAClient;
+import com.contentful.java.cma.model.CMAArray;
+import com.contentful.java.cma.model.CMAContentType;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fetches content types from the Management API, page by page, until the total reported by the
+ * API is reached. The server may return fewer content types per page than requested. The next
+ * page is requested while the current one is being processed.
+ */
+public class ClientContentTypeSource implements ContentTypeSource {
+  final CMAClient client;
+  final int pageSize;
+
+  public ClientContentTypeSource(CMAClient client) {
+    this(client, Generator.DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * @param client   management api client instance
+   * @param pageSize maximum number of content types fetched with a single request
+   */
+  public ClientContentTypeSource(CMAClient client, int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive, was " + pageSize + ".");
+    }
+    this.client = client;
+    this.pageSize = pageSize;
+  }
+
+  @Override public void read(PageConsumer consumer) throws Exception {
+    ExecutorService fetcher = Executors.newSingleThreadExecutor();
+    try {
+      Future<CMAArray<CMAContentType>> next = fetcher.submit(fetchPage(0));
+      int skip = 0;
+
+      while (next != null) {
+        CMAArray<CMAContentType> array = Generator.await(next);
+        List<CMAContentType> page = array.getItems();
+        skip += page.size();
+        // An empty page ends the loop even if the total is off, e.g. after concurrent deletes
+        next = page.isEmpty() || skip >= array.getTotal() ? null : fetcher.submit(fetchPage(skip));
+
+        consumer.onPage(page);
+      }
+    } finally {
+      fetcher.shutdownNow();
+    }
+  }
+
+  Callable<CMAArray<CMAContentType>> fetchPage(final int skip) {
+    return new Callable<CMAArray<CMAContentType>>() {
+      @Override public CMAArray<CMAContentType> call() throws Exception {
+        Map<String, String> query = new HashMap<String, String>();
+        query.put("skip", Integer.toString(skip));
+        query.put("limit", Integer.toString(pageSize));
+        return client.contentTypes().fetchAll(query);
+      }
+    };
+  }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.CMAClient;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * Creates {@link CMAClient} instances which share a single connection pool and dispatcher, so
+ * generating many spaces in one process does not open new connections for every space.
+ * <p>
+ * With a cache, responses are stored on disk and always revalidated with their ETag, so fetching
+ * content types which did not change costs a request answered by {@code 304 Not Modified}.
+ * <p>
+ * Requests failing with {@code 429 Too Many Requests}, a server error or an I/O error are retried
+ * with exponential back-off, waiting at least until the rate limit resets.
+ */
+public class ClientFactory implements Closeable {
+  static final long DEFAULT_CACHE_SIZE = 10 * 1024 * 1024;
+  static final int DEFAULT_MAX_RETRIES = 5;
+  static final long DEFAULT_RETRY_DELAY = 1000;
+  static final long MAX_RETRY_DELAY = 60000;
+  static final String HEADER_RATE_LIMIT_RESET = "X-Contentful-RateLimit-Reset";
+
+  final OkHttpClient shared;
+  Cache cache;
+  String coreEndpoint;
+  Generator.Listener listener;
+  int maxRetries = DEFAULT_MAX_RETRIES;
+  long retryDelay = DEFAULT_RETRY_DELAY;
+  long timeout;
+  Semaphore requests;
+
+  public ClientFactory() {
+    this(new OkHttpClient());
+  }
+
+  /**
+   * @param shared client whose connection pool and dispatcher are shared by all created clients
+   */
+  public ClientFactory(OkHttpClient shared) {
+    this.shared = shared;
+    this.cache = shared.cache();
+  }
+
+  /**
+   * Cache responses of the created clients in the given directory. Responses are keyed by url,
+   * which includes space and environment, and revalidated on every request.
+   *
+   * @param directory cache directory, or null to disable caching
+   * @return this factory
+   */
+  public ClientFactory setCacheDirectory(File directory) {
+    this.cache = directory == null ? null : new Cache(directory, DEFAULT_CACHE_SIZE);
+    return this;
+  }
+
+  /**
+   * Report every HTTP request of the created clients to the given listener.
+   *
+   * @param listener listener to report to, or null to reset
+   * @return this factory
+   */
+  public ClientFactory setListener(Generator.Listener listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  /**
+   * Set how often failed requests are retried, defaults to {@value #DEFAULT_MAX_RETRIES}.
+   *
+   * @param maxRetries maximum number of retries per request, 0 to disable retrying
+   * @return this factory
+   */
+  public ClientFactory setMaxRetries(int maxRetries) {
+    if (maxRetries < 0) {
+      throw new IllegalArgumentException("Retries must not be negative, was " + maxRetries + ".");
+    }
+    this.maxRetries = maxRetries;
+    return this;
+  }
+
+  /**
+   * Set connect and read timeouts of the created clients, defaults to the OkHttp defaults.
+   *
+   * @param timeout timeout, or 0 for the defaults
+   * @param unit    unit of {@code timeout}
+   * @return this factory
+   */
+  public ClientFactory setTimeout(long timeout, TimeUnit unit) {
+    this.timeout = unit.toMillis(timeout);
+    return this;
+  }
+
+  /**
+   * Limit the number of requests in flight at the same time, over all created clients.
+   *
+   * @param maxRequests maximum number of concurrent requests, or 0 for no limit
+   * @return this factory
+   */
+  public ClientFactory setMaxConcurrentRequests(int maxRequests) {
+    this.requests = maxRequests > 0 ? new Semaphore(maxRequests, true) : null;
+    return this;
+  }
+
+  ClientFactory setRetryDelay(long retryDelay) {
+    this.retryDelay = retryDelay;
+    return this;
+  }
+
+  /**
+   * Send requests to another Management API endpoint, e.g. a proxy or a local mock.
+   *
+   * @param coreEndpoint base url, or null for the default
+   * @return this factory
+   */
+  public ClientFactory setCoreEndpoint(String coreEndpoint) {
+    this.coreEndpoint = coreEndpoint;
+    return this;
+  }
+
+  /**
+   * Create a client for the given space and environment.
+   *
+   * @param spaceId       space id
+   * @param environmentId environment id
+   * @param token         management api access token
+   * @return client sharing connections with all other clients of this factory
+   */
+  public CMAClient create(String spaceId, String environmentId, String token) {
+    CMAClient.Builder builder = newBuilder(spaceId, environmentId, token);
+    if (coreEndpoint != null) {
+      builder.setCoreEndpoint(coreEndpoint);
+    }
+
+    return builder.setCallFactory(configure(builder.defaultCallFactoryBuilder()).build()).build();
+  }
+
+  /**
+   * Create a source streaming the content types of the given space and environment straight
+   * from the response, see {@link StreamingContentTypeSource}.
+   *
+   * @param spaceId       space id
+   * @param environmentId environment id
+   * @param token         management api access token
+   * @param pageSize      maximum number of content types fetched with a single request
+   * @return source sharing connections with all clients of this factory
+   */
+  public ContentTypeSource createStreamingSource(String spaceId, String environmentId,
+                                                 String token, int pageSize) {
+    return new StreamingContentTypeSource(configure(shared.newBuilder()).build(),
+        coreEndpoint == null ? StreamingContentTypeSource.DEFAULT_ENDPOINT : coreEndpoint,
+        spaceId, environmentId, token, pageSize);
+  }
+
+  OkHttpClient.Builder configure(OkHttpClient.Builder callFactory) {
+    callFactory.connectionPool(shared.connectionPool())
+        .dispatcher(shared.dispatcher());
+    if (timeout > 0) {
+      callFactory.connectTimeout(timeout, TimeUnit.MILLISECONDS)
+          .readTimeout(timeout, TimeUnit.MILLISECONDS);
+    }
+    if (maxRetries > 0) {
+      callFactory.addInterceptor(new RetryInterceptor(maxRetries, retryDelay));
+    }
+    if (requests != null) {
+      callFactory.addInterceptor(new LimitInterceptor(requests));
+    }
+    if (listener != null) {
+      callFactory.addInterceptor(new ListenerInterceptor(listener));
+    }
+    if (cache != null) {
+      callFactory.cache(cache).addNetworkInterceptor(new RevalidateInterceptor());
+    }
+    return callFactory;
+  }
+
+  static CMAClient.Builder newBuilder(String spaceId, String environmentId, String token) {
+    return new CMAClient.Builder()
+        .setApplication("Generator.java", Generator.getVersion())
+        .setAccessToken(token)
+        .setSpaceId(spaceId)
+        .setEnvironmentId(environmentId);
+  }
+
+  /**
+   * Release the shared connections and threads.
+   */
+  @Override public void close() {
+    shared.dispatcher().executorService().shutdown();
+    shared.connectionPool().evictAll();
+    if (cache != null && cache != shared.cache()) {
+      try {
+        cache.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  /**
+   * Retries idempotent requests with exponential back-off and jitter. Responses with status
+   * {@code 429} are retried no earlier than the rate limit reset announced by the server.
+   */
+  static final class RetryInterceptor implements Interceptor {
+    final int maxRetries;
+    final long delay;
+
+    RetryInterceptor(int maxRetries, long delay) {
+      this.maxRetries = maxRetries;
+      this.delay = delay;
+    }
+
+    @Override public Response intercept(Chain chain) throws IOException {
+      boolean idempotent = "GET".equals(chain.request().method());
+      for (int attempt = 0; ; attempt++) {
+        boolean retry = idempotent && attempt < maxRetries;
+        Response response;
+        try {
+          response = chain.proceed(chain.request());
+        } catch (IOException e) {
+          if (!retry || e instanceof UnknownHostException || chain.call().isCanceled()) {
+            throw e;
+          }
+          sleep(backOff(attempt));
+          continue;
+        }
+
+        int code = response.code();
+        if (!retry || (code != 429 && code < 500)) {
+          return response;
+        }
+
+        long wait = backOff(attempt);
+        if (code == 429) {
+          wait = Math.max(wait, rateLimitReset(response));
+        }
+        response.close();
+        sleep(wait);
+      }
+    }
+
+    long backOff(int attempt) {
+      long max = Math.min(MAX_RETRY_DELAY, delay << Math.min(attempt, 16));
+      return max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+    }
+
+    static long rateLimitReset(Response response) {
+      String reset = response.header(HEADER_RATE_LIMIT_RESET);
+      if (reset != null) {
+        try {
+          return TimeUnit.SECONDS.toMillis(Long.parseLong(reset.trim()));
+        } catch (NumberFormatException ignored) {
+        }
+      }
+      return 0;
+    }
+
+    static void sleep(long millis) throws IOException {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting to retry.");
+      }
+    }
+  }
+
+  /**
+   * Keeps the number of concurrent requests below the permits of a shared semaphore. A permit is
+   * held until the response headers arrive.
+   */
+  static final class LimitInterceptor implements Interceptor {
+    final Semaphore permits;
+
+    LimitInterceptor(Semaphore permits) {
+      this.permits = permits;
+    }
+
+    @Override public Response intercept(Chain chain) throws IOException {
+      try {
+        permits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a request slot.");
+      }
+      try {
+        return chain.proceed(chain.request());
+      } finally {
+        permits.release();
+      }
+    }
+  }
+
+  static final class ListenerInterceptor implements Interceptor {
+    final Generator.Listener listener;
+
+    ListenerInterceptor(Generator.Listener listener) {
+      this.listener = listener;
+    }
+
+    @Override public Response intercept(Chain chain) throws IOException {
+      String url = chain.request().url().toString();
+      long start = System.nanoTime();
+      Response response;
+      try {
+        response = chain.proceed(chain.request());
+      } catch (IOException e) {
+        listener.onRequest(url, -1, System.nanoTime() - start, -1);
+        throw e;
+      }
+
+      Response network = response.networkResponse();
+      listener.onRequest(url, network == null ? response.code() : network.code(),
+          System.nanoTime() - start,
+          response.body() == null ? -1 : response.body().contentLength());
+      return response;
+    }
+  }
+
+  /**
+   * Marks every response as stale, so that cached content types are never used without asking
+   * the server whether they are still up to date.
+   */
+  static final class RevalidateInterceptor implements Interceptor {
+    @Override public Response intercept(Chain chain) throws IOException {
+      return chain.proceed(chain.request()).newBuilder()
+          .header("Cache-Control", "no-cache")
+          .build();
+    }
+  }
+}
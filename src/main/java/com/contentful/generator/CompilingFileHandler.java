@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.vault.Resource;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.squareup.javapoet.JavaFile;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles generated models in memory instead of writing their sources, running annotation
+ * processors (like Vault's) found on the processor path in the same pass.
+ * <p>
+ * Sources are collected while generating, {@link #compile()} or {@link #compileTo(File)} then
+ * compile them with the system java compiler. Sources and resources created by annotation
+ * processors stay in memory as well, only the resulting class files are emitted.
+ */
+public class CompilingFileHandler implements Generator.FileHandler {
+  // Fixed entry timestamp, so that unchanged models produce an identical jar
+  static final long ENTRY_TIME = ZipFileHandler.ENTRY_TIME;
+
+  final Map<File, JavaFile> sources = new ConcurrentHashMap<File, JavaFile>();
+  final List<String> options = new ArrayList<String>();
+  String classpath;
+  String processorPath;
+
+  /**
+   * Set the class path used for compiling, defaults to the generator's own class path, which
+   * includes Vault.
+   *
+   * @param classpath class path, entries separated by {@link File#pathSeparator}
+   * @return this handler
+   */
+  public CompilingFileHandler setClasspath(String classpath) {
+    this.classpath = classpath;
+    return this;
+  }
+
+  /**
+   * Set the path annotation processors are loaded from, e.g. the Vault compiler jar and its
+   * dependencies. If not set, processors are looked up on the class path.
+   *
+   * @param processorPath processor path, entries separated by {@link File#pathSeparator}
+   * @return this handler
+   */
+  public CompilingFileHandler setProcessorPath(String processorPath) {
+    this.processorPath = processorPath;
+    return this;
+  }
+
+  /**
+   * Add options passed to the compiler, e.g. {@code -source 8 -target 8}.
+   *
+   * @param options compiler options
+   * @return this handler
+   */
+  public CompilingFileHandler addOptions(String... options) {
+    this.options.addAll(Arrays.asList(options));
+    return this;
+  }
+
+  @Override public void write(JavaFile javaFile, String path) {
+    sources.put(Generator.sourceFile(path, javaFile.packageName, javaFile.typeSpec.name),
+        javaFile);
+  }
+
+  @Override public boolean delete(File file) {
+    return sources.remove(file) != null;
+  }
+
+  /**
+   * Compile all collected sources.
+   *
+   * @return class files and processor generated resources by relative path, sorted by path
+   * @throws GeneratorException if compilation fails, with the compiler's diagnostics
+   */
+  public Map<String, byte[]> compile() throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new GeneratorException("No system java compiler available, a JDK is required.");
+    }
+
+    List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+    for (JavaFile javaFile : sources.values()) {
+      units.add(javaFile.toJavaFileObject());
+    }
+    Collections.sort(units, new Comparator<JavaFileObject>() {
+      @Override public int compare(JavaFileObject a, JavaFileObject b) {
+        return a.toUri().compareTo(b.toUri());
+      }
+    });
+
+    List<String> arguments = new ArrayList<String>(options);
+    arguments.add("-classpath");
+    arguments.add(classpath == null ? defaultClasspath() : classpath);
+    if (processorPath != null) {
+      arguments.add("-processorpath");
+      arguments.add(processorPath);
+    }
+
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    StandardJavaFileManager standard =
+        compiler.getStandardFileManager(diagnostics, null, Charsets.UTF_8);
+    MemoryFileManager fileManager = new MemoryFileManager(standard);
+    try {
+      boolean success =
+          compiler.getTask(null, fileManager, diagnostics, arguments, null, units).call();
+      if (!success) {
+        List<String> errors = new ArrayList<String>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+          if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+            errors.add(diagnostic.toString());
+          }
+        }
+        throw new GeneratorException("Failed to compile models:\n" + Joiner.on('\n').join(errors));
+      }
+    } finally {
+      fileManager.close();
+    }
+
+    Map<String, byte[]> result = new TreeMap<String, byte[]>();
+    for (Map.Entry<String, ByteArrayOutputStream> entry : fileManager.outputs.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().toByteArray());
+    }
+    return result;
+  }
+
+  /**
+   * Compile all collected sources into a jar, if {@code output} ends with {@code .jar}, or a
+   * class folder otherwise.
+   *
+   * @param output jar file or class folder
+   */
+  public void compileTo(File output) throws IOException {
+    Map<String, byte[]> classes = compile();
+    if (output.getName().endsWith(".jar")) {
+      writeJar(classes, output);
+    } else {
+      for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+        File file = new File(output, entry.getKey());
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), entry.getValue());
+      }
+    }
+  }
+
+  static void writeJar(Map<String, byte[]> classes, File jar) throws IOException {
+    File folder = jar.getAbsoluteFile().getParentFile();
+    Files.createDirectories(folder.toPath());
+
+    JarOutputStream output =
+        new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jar)));
+    try {
+      for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+        JarEntry jarEntry = new JarEntry(entry.getKey());
+        jarEntry.setTime(ENTRY_TIME);
+        output.putNextEntry(jarEntry);
+        output.write(entry.getValue());
+        output.closeEntry();
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  static String defaultClasspath() {
+    String vault = new File(
+        Resource.class.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath();
+    return vault + File.pathSeparator + System.getProperty("java.class.path");
+  }
+
+  /**
+   * Keeps everything the compiler and annotation processors write in memory.
+   */
+  static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    final Map<String, ByteArrayOutputStream> outputs =
+        new ConcurrentHashMap<String, ByteArrayOutputStream>();
+
+    MemoryFileManager(StandardJavaFileManager fileManager) {
+      super(fileManager);
+    }
+
+    @Override public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                         JavaFileObject.Kind kind,
+                                                         FileObject sibling) {
+      String path = className.replace('.', '/') + kind.extension;
+      return new MemoryFileObject(path, kind, kind == JavaFileObject.Kind.CLASS ? outputs : null);
+    }
+
+    @Override public FileObject getFileForOutput(Location location, String packageName,
+                                                 String relativeName, FileObject sibling) {
+      String path = (packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/")
+          + relativeName;
+      return new MemoryFileObject(path, JavaFileObject.Kind.OTHER, outputs);
+    }
+  }
+
+  static final class MemoryFileObject extends SimpleJavaFileObject {
+    final String path;
+    final Map<String, ByteArrayOutputStream> outputs;
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+    /**
+     * @param outputs where to publish the content, or null for generated sources, which are
+     *                only read back by the compiler
+     */
+    MemoryFileObject(String path, Kind kind, Map<String, ByteArrayOutputStream> outputs) {
+      super(URI.create("mem:///" + path), kind);
+      this.path = path;
+      this.outputs = outputs;
+    }
+
+    @Override public OutputStream openOutputStream() {
+      content.reset();
+      if (outputs != null) {
+        outputs.put(path, content);
+      }
+      return content;
+    }
+
+    @Override public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return new String(content.toByteArray(), Charsets.UTF_8);
+    }
+  }
+}
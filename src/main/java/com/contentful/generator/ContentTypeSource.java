@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.model.CMAContentType;
+
+import java.util.List;
+
+/**
+ * Provides the content types models are generated for.
+ */
+public interface ContentTypeSource {
+  /**
+   * Read all content types, handing them to {@code consumer} page by page as they become
+   * available.
+   *
+   * @param consumer receiver of the pages
+   * @throws Exception if reading fails, or the consumer fails to process a page
+   */
+  void read(PageConsumer consumer) throws Exception;
+
+  interface PageConsumer {
+    void onPage(List<CMAContentType> page) throws Exception;
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.model.CMAContentType;
+import com.contentful.java.cma.model.CMAField;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Selects content types by id, together with every content type they link to.
+ * <p>
+ * Ids are matched against patterns where {@code *} matches any sequence of characters and
+ * {@code ?} a single character. A content type is selected if it matches any include pattern, or
+ * no include patterns are given, and matches no exclude pattern. Content types linked to from a
+ * selected content type, directly or transitively, are always selected, so that all generated
+ * models compile. As the link closure needs the whole space, all pages of the delegate are read
+ * before the selection is handed on as a single page.
+ */
+final class FilteredContentTypeSource implements ContentTypeSource {
+  final ContentTypeSource delegate;
+  final List<Pattern> includes;
+  final List<Pattern> excludes;
+
+  FilteredContentTypeSource(ContentTypeSource delegate, List<String> includes,
+                            List<String> excludes) {
+    this.delegate = delegate;
+    this.includes = compile(includes);
+    this.excludes = compile(excludes);
+  }
+
+  @Override public void read(PageConsumer consumer) throws Exception {
+    final Map<String, CMAContentType> all = new LinkedHashMap<String, CMAContentType>();
+    delegate.read(new PageConsumer() {
+      @Override public void onPage(List<CMAContentType> page) {
+        for (CMAContentType contentType : page) {
+          all.put(contentType.getId(), contentType);
+        }
+      }
+    });
+
+    consumer.onPage(select(all));
+  }
+
+  List<CMAContentType> select(Map<String, CMAContentType> all) {
+    Set<String> selected = new HashSet<String>();
+    Deque<String> queue = new ArrayDeque<String>();
+    for (String id : all.keySet()) {
+      if (matches(id)) {
+        selected.add(id);
+        queue.add(id);
+      }
+    }
+
+    while (!queue.isEmpty()) {
+      CMAContentType contentType = all.get(queue.poll());
+      if (contentType == null || contentType.getFields() == null) {
+        continue;
+      }
+
+      for (CMAField field : contentType.getFields()) {
+        if (field.isDisabled() || field.isOmitted()) {
+          continue;
+        }
+
+        String target = Generator.linkTarget(field);
+        if (target != null && all.containsKey(target) && selected.add(target)) {
+          queue.add(target);
+        }
+      }
+    }
+
+    List<CMAContentType> result = new ArrayList<CMAContentType>(selected.size());
+    for (CMAContentType contentType : all.values()) {
+      if (selected.contains(contentType.getId())) {
+        result.add(contentType);
+      }
+    }
+    return result;
+  }
+
+  boolean matches(String id) {
+    return (includes.isEmpty() || matchesAny(includes, id)) && !matchesAny(excludes, id);
+  }
+
+  private static boolean matchesAny(List<Pattern> patterns, String id) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(id).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static List<Pattern> compile(List<String> globs) {
+    if (globs == null) {
+      return Collections.emptyList();
+    }
+
+    List<Pattern> result = new ArrayList<Pattern>(globs.size());
+    for (String glob : globs) {
+      StringBuilder regex = new StringBuilder();
+      int start = 0;
+      for (int i = 0; i < glob.length(); i++) {
+        char c = glob.charAt(i);
+        if (c == '*' || c == '?') {
+          if (i > start) {
+            regex.append(Pattern.quote(glob.substring(start, i)));
+          }
+          regex.append(c == '*' ? ".*" : ".");
+          start = i + 1;
+        }
+      }
+      if (start < glob.length()) {
+        regex.append(Pattern.quote(glob.substring(start)));
+      }
+      result.add(Pattern.compile(regex.toString()));
+    }
+    return result;
+  }
+}
@@ -17,14 +17,21 @@
 package com.contentful.generator;
 
 import com.contentful.java.cma.CMAClient;
-import com.contentful.java.cma.Constants;
-import com.contentful.java.cma.model.CMAArray;
 import com.contentful.java.cma.model.CMAContentType;
 import com.contentful.java.cma.model.CMAField;
 import com.contentful.vault.ContentType;
 import com.contentful.vault.Field;
+import com.google.common.base.Ascii;
 import com.google.common.base.CaseFormat;
+import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
+import com.google.common.base.Utf8;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.FieldSpec;
@@ -36,80 +43,639 @@ import com.squareup.javapoet.TypeSpec;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.lang.model.element.Modifier;
 
 public class Generator {
   static final String PROPERTIES_KEY_VERSION_NAME = "version.name";
   static final String PROPERTIES = "generator.properties";
+  static final int DEFAULT_PAGE_SIZE = 100;
+  static final int NORMALIZED_CACHE_SIZE = 10000;
+  static final String LAT_LON = "LatLon";
+  static final Map<CaseFormat, LoadingCache<String, String>> NORMALIZED =
+      createNormalizedCaches();
+  static final Comparator<CMAContentType> BY_ID = new Comparator<CMAContentType>() {
+    @Override public int compare(CMAContentType a, CMAContentType b) {
+      return String.valueOf(a.getId()).compareTo(String.valueOf(b.getId()));
+    }
+  };
 
   final FileHandler fileHandler;
   final Printer printer;
-  final Map<String, String> models;
+  int pageSize = DEFAULT_PAGE_SIZE;
+  int threads = 1;
+  ExecutorService executor;
+  boolean incremental;
+  Listener listener;
+  List<String> includes;
+  List<String> excludes;
+  String singleFile;
+  boolean typeAdapters;
+  boolean typedFields;
+  boolean lazyLinks;
 
-  Generator(FileHandler fileHandler, Printer printer) {
+  /**
+   * @param fileHandler output the generated sources are written to, or null for files
+   * @param printer     receiver of progress and warning messages, or null for standard output
+   */
+  public Generator(FileHandler fileHandler, Printer printer) {
     this.fileHandler = fileHandler == null ? new DefaultFileHandler() : fileHandler;
-    this.printer = printer == null ? new DefaultPrinter() : printer;
-    this.models = new HashMap<String, String>();
+    this.printer = new SynchronizedPrinter(printer == null ? new DefaultPrinter() : printer);
   }
 
   public Generator() {
     this(null, null);
   }
 
+  /**
+   * @param fileHandler output the generated sources are written to
+   */
+  public Generator(FileHandler fileHandler) {
+    this(fileHandler, null);
+  }
+
+  /**
+   * Set the number of content types requested per page, defaults to {@value #DEFAULT_PAGE_SIZE}.
+   *
+   * @param pageSize maximum number of content types fetched with a single request
+   * @return this generator
+   */
+  public Generator setPageSize(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive, was " + pageSize + ".");
+    }
+    this.pageSize = pageSize;
+    return this;
+  }
+
+  /**
+   * Generate and write models on {@code threads} worker threads, defaults to generating them
+   * one by one on the calling thread.
+   *
+   * @param threads number of worker threads
+   * @return this generator
+   */
+  public Generator setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Thread count must be positive, was " + threads + ".");
+    }
+    this.threads = threads;
+    return this;
+  }
+
+  /**
+   * Generate and write models on the given executor, takes precedence over
+   * {@link #setThreads(int)}. The executor is not shut down by the generator.
+   *
+   * @param executor executor running the model generation tasks, or null to reset
+   * @return this generator
+   */
+  public Generator setExecutor(ExecutorService executor) {
+    this.executor = executor;
+    return this;
+  }
+
+  /**
+   * Keep a manifest of schema fingerprints next to the generated sources, and only regenerate
+   * models of content types which changed since the previous run. Models of content types which
+   * no longer exist are deleted.
+   *
+   * @param incremental whether to skip unchanged content types
+   * @return this generator
+   */
+  public Generator setIncremental(boolean incremental) {
+    this.incremental = incremental;
+    return this;
+  }
+
+  /**
+   * Report timings and sizes of every generation step to the given listener, see {@link Stats}.
+   *
+   * @param listener listener to report to, or null to reset
+   * @return this generator
+   */
+  public Generator setListener(Listener listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  /**
+   * Only generate models for content types whose id matches one of the given patterns, and the
+   * content types they link to. Patterns may use {@code *} and {@code ?} wildcards.
+   *
+   * @param includes id patterns, or null to include all content types
+   * @return this generator
+   */
+  public Generator setIncludes(List<String> includes) {
+    this.includes = includes;
+    return this;
+  }
+
+  /**
+   * Skip content types whose id matches one of the given patterns, unless an included content
+   * type links to them. Patterns may use {@code *} and {@code ?} wildcards.
+   *
+   * @param excludes id patterns, or null to exclude no content types
+   * @return this generator
+   */
+  public Generator setExcludes(List<String> excludes) {
+    this.excludes = excludes;
+    return this;
+  }
+
+  /**
+   * Generate all models as static nested classes of a single class with the given name, instead
+   * of one source file per model. Speeds up writing and compiling the models of big spaces.
+   *
+   * @param className simple name of the class holding all models, or null for one file per model
+   * @return this generator
+   */
+  public Generator setSingleFile(String className) {
+    this.singleFile = className;
+    return this;
+  }
+
+  /**
+   * Generate a Gson {@code TypeAdapter} next to each model, named after the model with a
+   * {@code TypeAdapter} suffix, which reads entries without reflection. Register the adapters
+   * through their {@code FACTORY} constants. Generated code then depends on Gson.
+   *
+   * @param typeAdapters whether to generate type adapters, disabled by default
+   * @return this generator
+   */
+  public Generator setTypeAdapters(boolean typeAdapters) {
+    this.typeAdapters = typeAdapters;
+    return this;
+  }
+
+  /**
+   * Map field values to specific types instead of the ones Vault supports: required Integer,
+   * Number and Boolean fields become primitives, optional ones stay boxed and are null when
+   * missing. Dates become epoch milliseconds, and locations instances of a generated
+   * {@value #LAT_LON} class. Models are then plain classes without Vault's superclass and
+   * annotations, which Vault's annotation processor would reject. Fill them with the type
+   * adapters of {@link #setTypeAdapters(boolean)} or custom code.
+   *
+   * @param typedFields whether to use typed fields, disabled by default
+   * @return this generator
+   */
+  public Generator setTypedFields(boolean typedFields) {
+    this.typedFields = typedFields;
+    return this;
+  }
+
+  /**
+   * Generate link fields as lazy references holding the id of the linked entry or asset, which
+   * resolve it on first access through a {@code LinkResolver}. Links become {@code LazyLink}
+   * fields and arrays of links {@code LazyList} fields, their getters still return the linked
+   * models. The support classes are generated into the package of the models. Models are then
+   * plain classes without Vault's superclass and annotations, as Vault's annotation processor
+   * rejects lazy fields. Fill them with the type adapters of {@link #setTypeAdapters(boolean)} or
+   * custom code.
+   *
+   * @param lazyLinks whether to generate lazy link fields, disabled by default
+   * @return this generator
+   */
+  public Generator setLazyLinks(boolean lazyLinks) {
+    this.lazyLinks = lazyLinks;
+    return this;
+  }
+
   /**
    * Fetch content types from the given space and generate corresponding model classes.
+   * <p>
+   * Content types are fetched page by page, see {@link #setPageSize(int)}.
    *
    * @param pkg    package name for generated classes
    * @param path   package source root
    * @param client management api client instance
    */
   public void generate(String pkg, String path, CMAClient client) {
+    generate(pkg, path, new ClientContentTypeSource(client, pageSize));
+  }
+
+  /**
+   * Read content types from the given source and generate corresponding model classes.
+   * <p>
+   * A model is generated as soon as all of the content types it links to are known, models
+   * linking to content types of later pages are deferred until those arrive. Models are
+   * generated and written on the executor configured by {@link #setThreads(int)} or
+   * {@link #setExecutor(ExecutorService)}. With {@link #setIncludes(List)} or
+   * {@link #setExcludes(List)}, all content types are read before generating the selected ones.
+   * <p>
+   * The state of a call is kept apart from the generator, so one instance can be reused for many
+   * calls, also concurrent ones as long as they write to different packages.
+   *
+   * @param pkg    package name for generated classes
+   * @param path   package source root
+   * @param source content types to generate models for
+   */
+  public void generate(String pkg, String path, ContentTypeSource source) {
+    if (includes != null || excludes != null) {
+      source = new FilteredContentTypeSource(source, includes, excludes);
+    }
+
+    final Run run = new Run(pkg, path);
+    run.workers = createWorkers();
+    if (singleFile != null) {
+      run.nested = new ConcurrentSkipListMap<String, TypeSpec>();
+    }
+    File folder = packageFolder(path, pkg);
+    long start = System.nanoTime();
     try {
-      CMAArray<CMAContentType> contentTypes = client.contentTypes().fetchAll();
+      run.manifest = incremental
+          ? Manifest.load(folder, getVersion()) : Manifest.empty(getVersion());
+      run.manifest.singleFile = singleFile;
+      if (incremental && run.manifest.layoutChanged()) {
+        deleteOtherLayout(run);
+      }
+
+      source.read(new ContentTypeSource.PageConsumer() {
+        long fetchStart = System.nanoTime();
+
+        @Override public void onPage(List<CMAContentType> page) throws Exception {
+          if (listener != null) {
+            listener.onFetch(page.size(), System.nanoTime() - fetchStart);
+          }
+
+          // The order of content types is not guaranteed, process them in a stable one
+          List<CMAContentType> sorted = new ArrayList<CMAContentType>(page);
+          Collections.sort(sorted, BY_ID);
+          for (CMAContentType contentType : sorted) {
+            Schema schema = Schema.of(contentType);
+            if (schema.className != null) {
+              run.register(schema);
+            }
+            if (typedFields && !run.locations) {
+              run.locations = schema.has(Schema.Kind.LOCATION);
+            }
+            run.pending.add(schema);
+          }
 
-      for (CMAContentType contentType : contentTypes.getItems()) {
-        String name = contentType.getName();
-        if (name != null) {
-          String className = normalize(name, CaseFormat.UPPER_CAMEL);
-          models.put(contentType.getId(), className);
+          generatePending(run, true);
+          fetchStart = System.nanoTime();
         }
+      });
+      generatePending(run, false);
+
+      for (Future<?> task : run.tasks) {
+        await(task);
       }
 
-      for (CMAContentType contentType : contentTypes.getItems()) {
-        String name = contentType.getName();
-        if (name == null || name.isEmpty()) {
-          printer.print("WARNING: Ignoring Content Type (id="
-              + "\"" + contentType.getId() + "\""
-              + "), has no name.");
-          continue;
-        }
+      Manifest manifest = run.manifest;
+      if (run.locations) {
+        writeSupportClass(run, createLatLon());
+      }
+      if (lazyLinks) {
+        ClassName resolver = modelClassName(run.pkg, LazyLinks.RESOLVER);
+        writeSupportClass(run, LazyLinks.createResolver(resolver));
+        writeSupportClass(run, LazyLinks.createLazyLink(
+            modelClassName(run.pkg, LazyLinks.LAZY_LINK), resolver));
+        writeSupportClass(run, LazyLinks.createLazyList(
+            modelClassName(run.pkg, LazyLinks.LAZY_LIST), resolver));
+      }
 
-        JavaFile javaFile = generateModel(pkg, contentType,
-            models.get(contentType.getId()));
+      int deleted = 0;
+      if (run.nested != null) {
+        // Removed models simply disappear from the single file
+        deleted = manifest.stale().size();
+        if (!incremental || manifest.changed() || !run.sourceFile(singleFile).isFile()) {
+          writeSingleFile(run);
+        }
+      }
+      if (incremental) {
+        if (run.nested == null) {
+          for (String className : manifest.stale()) {
+            if (fileHandler.delete(run.sourceFile(className))) {
+              deleted++;
+            }
+            fileHandler.delete(run.sourceFile(className + TypeAdapters.SUFFIX));
+          }
+        }
+        if (manifest.changed()) {
+          manifest.save(folder);
+        }
+      }
 
-        fileHandler.write(javaFile, path);
+      if (incremental && manifest.generated == 0 && deleted == 0) {
+        printer.print(String.format("Nothing to do, %d models are up to date.",
+            manifest.skipped));
+      } else {
+        printer.print(String.format("Generated %d models, skipped %d unchanged, deleted %d.",
+            manifest.generated, manifest.skipped, deleted));
       }
     } catch (Exception e) {
+      // Let running workers finish, so that everything they wrote gets cleaned up
+      for (Future<?> task : run.tasks) {
+        task.cancel(false);
+      }
+      for (Future<?> task : run.tasks) {
+        try {
+          task.get();
+        } catch (Exception ignored) {
+        }
+      }
+
       printer.print("Failed to fetch content types, reason: " + e.toString());
 
       // Clean up any generated files
-      String generatedPath = Joiner.on(File.separatorChar).join(
-          path,
-          Joiner.on(File.separatorChar).join(pkg.split("\\.")));
-
-      for (String fileName : models.values()) {
-        fileHandler.delete(new File(generatedPath + File.separator + fileName + ".java"));
+      synchronized (run.written) {
+        for (File file : run.written) {
+          fileHandler.delete(file);
+        }
       }
 
       throw new GeneratorException(e);
+    } finally {
+      if (run.workers != executor) {
+        run.workers.shutdown();
+      }
+      if (listener != null) {
+        listener.onFinish(System.nanoTime() - start);
+      }
     }
   }
 
+  /**
+   * New generator with the same configuration, writing to the same file handler.
+   */
+  Generator copy(Printer printer) {
+    Generator copy = new Generator(fileHandler, printer);
+    copy.pageSize = pageSize;
+    copy.threads = threads;
+    copy.executor = executor;
+    copy.incremental = incremental;
+    copy.listener = listener;
+    copy.includes = includes;
+    copy.excludes = excludes;
+    copy.singleFile = singleFile;
+    copy.typeAdapters = typeAdapters;
+    copy.typedFields = typedFields;
+    copy.lazyLinks = lazyLinks;
+    return copy;
+  }
+
+  ExecutorService createWorkers() {
+    if (executor != null) {
+      return executor;
+    } else if (threads > 1) {
+      return Executors.newFixedThreadPool(threads);
+    }
+    return MoreExecutors.newDirectExecutorService();
+  }
+
+  /**
+   * Submit every pending content type for generation, unless {@code deferUnresolved} is set and
+   * the content type links to a content type which has not been fetched yet. With a single file,
+   * models are collected in {@link Run#nested} instead of being written, unchanged ones included.
+   */
+  void generatePending(Run run, boolean deferUnresolved) throws Exception {
+    Iterator<Schema> iterator = run.pending.iterator();
+    while (iterator.hasNext()) {
+      Schema schema = iterator.next();
+      if (schema.name == null || schema.name.isEmpty()) {
+        printer.print("WARNING: Ignoring Content Type (id="
+            + "\"" + schema.id + "\""
+            + "), has no name.");
+        iterator.remove();
+        continue;
+      }
+
+      if (deferUnresolved && !run.linksResolved(schema)) {
+        continue;
+      }
+
+      iterator.remove();
+      String className = run.models.get(schema.id);
+      String fingerprint = incremental ? fingerprint(run, schema, className) : null;
+      if (run.manifest.isUpToDate(schema.id, className, fingerprint,
+          run.sourceFile(run.nested == null ? className : singleFile))) {
+        run.manifest.skipped++;
+        if (run.nested == null) {
+          continue;
+        }
+      } else {
+        run.manifest.generated++;
+      }
+
+      Future<?> task = run.workers.submit(run.nested == null
+          ? writeModel(run, schema, className)
+          : nestModel(run, schema, className));
+      run.tasks.add(task);
+
+      // Fail fast instead of generating the rest of the space
+      if (task.isDone()) {
+        await(task);
+      }
+    }
+  }
+
+  Callable<Void> writeModel(final Run run, final Schema schema, final String className) {
+    return new Callable<Void>() {
+      @Override public Void call() throws Exception {
+        long start = System.nanoTime();
+        JavaFile javaFile = generateModel(run, schema, className);
+        JavaFile adapter = null;
+        if (typeAdapters) {
+          adapter = JavaFile.builder(run.pkg, TypeAdapters.create(
+              modelClassName(run.pkg, className), schema, javaFile.typeSpec.fieldSpecs,
+              typedFields, lazyLinks))
+              .skipJavaLangImports(true)
+              .build();
+        }
+        long built = System.nanoTime();
+
+        run.written.add(run.sourceFile(className));
+        fileHandler.write(javaFile, run.path);
+        if (adapter != null) {
+          run.written.add(run.sourceFile(adapter.typeSpec.name));
+          fileHandler.write(adapter, run.path);
+        } else if (incremental) {
+          // Toggling adapters changes every fingerprint, so each previous adapter goes here
+          fileHandler.delete(run.sourceFile(className + TypeAdapters.SUFFIX));
+        }
+
+        if (listener != null) {
+          long end = System.nanoTime();
+          long bytes = Utf8.encodedLength(javaFile.toString());
+          if (adapter != null) {
+            bytes += Utf8.encodedLength(adapter.toString());
+          }
+          listener.onModel(schema.id, className, javaFile.typeSpec.fieldSpecs.size(),
+              built - start, end - built, bytes);
+        }
+        return null;
+      }
+    };
+  }
+
+  Callable<Void> nestModel(final Run run, final Schema schema, final String className) {
+    return new Callable<Void>() {
+      @Override public Void call() throws Exception {
+        long start = System.nanoTime();
+        TypeSpec typeSpec = createModel(run, schema, className).toBuilder()
+            .addModifiers(Modifier.STATIC)
+            .build();
+        run.nested.put(className, typeSpec);
+        if (typeAdapters) {
+          TypeSpec adapter = TypeAdapters.create(
+              modelClassName(run.pkg, className), schema, typeSpec.fieldSpecs, typedFields,
+              lazyLinks);
+          run.nested.put(adapter.name, adapter.toBuilder().addModifiers(Modifier.STATIC).build());
+        }
+
+        if (listener != null) {
+          listener.onModel(schema.id, className, typeSpec.fieldSpecs.size(),
+              System.nanoTime() - start, 0, 0);
+        }
+        return null;
+      }
+    };
+  }
+
+  void writeSingleFile(Run run) throws IOException {
+    if (run.nested.containsKey(singleFile)) {
+      throw new GeneratorException(String.format(
+          "Model \"%s\" has the same name as the single file class.", singleFile));
+    }
+
+    TypeSpec.Builder builder = TypeSpec.classBuilder(singleFile)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+    for (TypeSpec typeSpec : run.nested.values()) {
+      builder.addType(typeSpec);
+    }
+
+    long start = System.nanoTime();
+    JavaFile javaFile =
+        JavaFile.builder(run.pkg, builder.build()).skipJavaLangImports(true).build();
+    run.written.add(run.sourceFile(singleFile));
+    fileHandler.write(javaFile, run.path);
+    if (listener != null) {
+      listener.onModel(null, singleFile, 0, 0, System.nanoTime() - start,
+          Utf8.encodedLength(javaFile.toString()));
+    }
+  }
+
+  /**
+   * Add a class the models depend on to the single file, or write it, unless unchanged.
+   */
+  void writeSupportClass(Run run, TypeSpec typeSpec) throws IOException {
+    if (run.models.containsValue(typeSpec.name)) {
+      throw new GeneratorException(String.format(
+          "Model \"%s\" has the same name as a generated support class.", typeSpec.name));
+    }
+
+    if (run.nested != null) {
+      run.nested.put(typeSpec.name, typeSpec.toBuilder().addModifiers(Modifier.STATIC).build());
+    } else if (!incremental || run.manifest.changed()
+        || !run.sourceFile(typeSpec.name).isFile()) {
+      run.written.add(run.sourceFile(typeSpec.name));
+      fileHandler.write(
+          JavaFile.builder(run.pkg, typeSpec).skipJavaLangImports(true).build(), run.path);
+    }
+  }
+
+  /**
+   * Delete the sources of the previous run after switching between one file per model and a
+   * single file, or renaming the single file class. Runs before anything is written, so new
+   * sources sharing a name with old ones are kept.
+   */
+  void deleteOtherLayout(Run run) {
+    Manifest manifest = run.manifest;
+    if (manifest.previousSingleFile != null) {
+      fileHandler.delete(run.sourceFile(manifest.previousSingleFile));
+    } else if (!manifest.previous.isEmpty()) {
+      for (Manifest.Entry entry : manifest.previous.values()) {
+        fileHandler.delete(run.sourceFile(entry.className));
+        fileHandler.delete(run.sourceFile(entry.className + TypeAdapters.SUFFIX));
+      }
+      for (String className : Arrays.asList(LAT_LON, LazyLinks.RESOLVER, LazyLinks.LAZY_LINK,
+          LazyLinks.LAZY_LIST)) {
+        fileHandler.delete(run.sourceFile(className));
+      }
+    }
+  }
+
+  /**
+   * Id of the content type a Link or Array of Links field points to, or null if the field is no
+   * entry link or does not validate a single content type.
+   */
+  static String linkTarget(CMAField field) {
+    return Schema.Field.of(field, field.getId()).target;
+  }
+
+  /**
+   * Hash of everything the generated model depends on: the content type's id, name and fields,
+   * the class names of the content types it links to, the single file class it is nested in, and
+   * whether a type adapter goes with it.
+   */
+  String fingerprint(Run run, Schema schema, String className) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    putString(hasher, run.pkg);
+    putString(hasher, className);
+    putString(hasher, singleFile);
+    putString(hasher, schema.id);
+    putString(hasher, schema.name);
+    putString(hasher, typeAdapters ? TypeAdapters.SUFFIX : null);
+    putString(hasher, typedFields ? LAT_LON : null);
+    putString(hasher, lazyLinks ? LazyLinks.LAZY_LINK : null);
+
+    for (Schema.Field field : schema.fields) {
+      putString(hasher, field.id);
+      putString(hasher, field.kind.name());
+      hasher.putBoolean(field.required);
+      putString(hasher, field.target);
+      putString(hasher, field.target == null ? null : run.models.get(field.target));
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    hasher.putString(String.valueOf(value), Charsets.UTF_8).putByte((byte) 0);
+  }
+
+  static <T> T await(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    }
+  }
+
+  static File packageFolder(String path, String pkg) {
+    return new File(Joiner.on(File.separatorChar).join(
+        path,
+        Joiner.on(File.separatorChar).join(pkg.split("\\."))));
+  }
+
+  static File sourceFile(String path, String pkg, String className) {
+    return new File(packageFolder(path, pkg), className + ".java");
+  }
+
   /**
    * Convenience method around {@link #generate} that creates a {@link CMAClient}
    * per the given {@code token}.
@@ -120,17 +686,18 @@ public class Generator {
    * @param token   management api access token
    */
   public void generate(String spaceId, String environmentId, String pkg, String path, String token) {
-    CMAClient client = new CMAClient.Builder()
-        .setApplication("Generator.java", getVersion())
-        .setAccessToken(token)
-        .setSpaceId(spaceId)
-        .setEnvironmentId(environmentId)
-        .build();
+    generate(pkg, path, createClient(spaceId, environmentId, token));
+  }
 
-    generate(pkg, path, client);
+  static CMAClient createClient(String spaceId, String environmentId, String token) {
+    CMAClient.Builder builder = ClientFactory.newBuilder(spaceId, environmentId, token);
+    return builder.setCallFactory(builder.defaultCallFactoryBuilder()
+        .addInterceptor(new ClientFactory.RetryInterceptor(
+            ClientFactory.DEFAULT_MAX_RETRIES, ClientFactory.DEFAULT_RETRY_DELAY))
+        .build()).build();
   }
 
-  private static String getVersion() {
+  static String getVersion() {
     Properties properties = new Properties();
     try {
       properties.load(Generator.class.getClassLoader().getResourceAsStream(
@@ -141,9 +708,9 @@ public class Generator {
     return properties.getProperty(PROPERTIES_KEY_VERSION_NAME);
   }
 
-  AnnotationSpec annotateModel(CMAContentType contentType) {
+  AnnotationSpec annotateModel(Schema schema) {
     return AnnotationSpec.builder(ContentType.class)
-        .addMember("value", "$S", contentType.getId())
+        .addMember("value", "$S", schema.id)
         .build();
   }
 
@@ -155,57 +722,48 @@ public class Generator {
     return builder.build();
   }
 
-  JavaFile generateModel(String pkg, CMAContentType contentType, String className)
+  JavaFile generateModel(Run run, CMAContentType contentType, String className)
       throws Exception {
-    TypeSpec.Builder builder = TypeSpec.classBuilder(className)
-        .addModifiers(Modifier.PUBLIC)
-        .superclass(ClassName.get("com.contentful.vault", "Resource"))
-        .addAnnotation(annotateModel(contentType));
+    return generateModel(run, Schema.of(contentType), className);
+  }
 
-    for (CMAField field : contentType.getFields()) {
-      if (field.isDisabled() || field.isOmitted()) {
-        continue;
-      }
+  JavaFile generateModel(Run run, Schema schema, String className) throws Exception {
+    return JavaFile.builder(run.pkg, createModel(run, schema, className))
+        .skipJavaLangImports(true)
+        .build();
+  }
 
-      String fieldName = normalize(field.getId(), CaseFormat.LOWER_CAMEL);
-      FieldSpec fieldSpec = createFieldSpec(field, pkg, fieldName, contentType.getId());
+  /**
+   * Whether models are Vault resources, which Vault's annotation processor only accepts with
+   * the field types it supports.
+   */
+  boolean vaultModels() {
+    return !typedFields && !lazyLinks;
+  }
+
+  TypeSpec createModel(Run run, Schema schema, String className) {
+    TypeSpec.Builder builder = TypeSpec.classBuilder(className)
+        .addModifiers(Modifier.PUBLIC);
+    if (vaultModels()) {
+      builder.superclass(ClassName.get("com.contentful.vault", "Resource"))
+          .addAnnotation(annotateModel(schema));
+    }
+
+    for (Schema.Field field : schema.fields) {
+      FieldSpec fieldSpec = createFieldSpec(run, field, schema.id);
 
       builder.addField(fieldSpec)
-          .addMethod(fieldGetter(fieldSpec));
-    }
-
-    return JavaFile.builder(pkg, builder.build()).skipJavaLangImports(true).build();
-  }
-
-  FieldSpec createArrayFieldSpec(CMAField field, String pkg, String fieldName,
-                                 String parentContentTypeId) {
-    Map arrayItems = field.getArrayItems();
-    String fieldId = field.getId();
-    if ("Link".equals(arrayItems.get("type"))) {
-      String linkType = (String) arrayItems.get("linkType");
-      if ("Asset".equals(linkType)) {
-        return fieldBuilder(
-            parameterizedList("com.contentful.vault", "Asset"), fieldName, fieldId).build();
-      } else if ("Entry".equals(linkType)) {
-        //noinspection unchecked
-        String linkContentType = extractSingleLinkContentType(
-            (List<Map<String, Object>>) arrayItems.get("validations"));
-
-        if (linkContentType == null) {
-          throwLinkNoContentType(parentContentTypeId, fieldId);
-        } else {
-          return fieldBuilder(parameterizedList(pkg, models.get(linkContentType)), fieldName,
-              fieldId).build();
-        }
-      } else {
-        throw new GeneratorException("Invalid array linkType.");
-      }
+          .addMethod(lazyLinks && field.isLink() ? lazyGetter(fieldSpec) : fieldGetter(fieldSpec));
     }
-    return fieldBuilder(ClassName.get(List.class), fieldName, fieldId).build();
+
+    return builder.build();
   }
 
   FieldSpec.Builder fieldBuilder(TypeName type, String fieldName, String fieldId) {
     FieldSpec.Builder builder = FieldSpec.builder(type, fieldName);
+    if (!vaultModels()) {
+      return builder;
+    }
     AnnotationSpec.Builder annotation = AnnotationSpec.builder(Field.class);
     if (!fieldId.equals(fieldName)) {
       annotation.addMember("value", "$S", fieldId);
@@ -213,41 +771,127 @@ public class Generator {
     return builder.addAnnotation(annotation.build());
   }
 
-  FieldSpec createFieldSpec(CMAField field, String pkg, String fieldName,
+  FieldSpec createFieldSpec(Run run, CMAField field, String fieldName,
                             String parentContentTypeId) {
-    Constants.CMAFieldType fieldType = field.getType();
-    String fieldId = field.getId();
-    switch (fieldType) {
-      case Array:
-        return createArrayFieldSpec(field, pkg, fieldName, parentContentTypeId);
-      case Link:
-        return createLinkFieldSpec(field.getLinkType(), field.getValidations(), pkg, fieldName,
-            fieldId, parentContentTypeId);
-    }
-    return fieldBuilder(ClassName.get(classForFieldType(fieldType)), fieldName, fieldId).build();
+    return createFieldSpec(run, Schema.Field.of(field, fieldName), parentContentTypeId);
   }
 
-  FieldSpec createLinkFieldSpec(String linkType, List<Map<String, Object>> validations, String pkg,
+  FieldSpec createLinkFieldSpec(Run run, String linkType, List<Map<String, Object>> validations,
                                 String fieldName, String fieldId, String parentContentTypeId) {
-    ClassName className = null;
-
-    if ("Asset".equals(linkType)) {
-      className = ClassName.get("com.contentful.vault", "Asset");
-    } else if ("Entry".equals(linkType)) {
-      String linkContentType = extractSingleLinkContentType(validations);
-      if (linkContentType == null) {
-        throwLinkNoContentType(parentContentTypeId, fieldId);
-      } else {
-        className = ClassName.get(pkg, models.get(linkContentType));
-      }
+    return createFieldSpec(run, Schema.Field.link(fieldId, fieldName, linkType, validations, false),
+        parentContentTypeId);
+  }
+
+  FieldSpec createFieldSpec(Run run, Schema.Field field, String parentContentTypeId) {
+    switch (field.kind) {
+      case ASSET:
+      case ASSET_ARRAY:
+        return fieldBuilder(linkType(run, ClassName.get("com.contentful.vault", "Asset"),
+            field.kind == Schema.Kind.ASSET_ARRAY), field.name, field.id).build();
+      case ENTRY:
+      case ENTRY_ARRAY:
+        if (field.target == null) {
+          throwLinkNoContentType(parentContentTypeId, field.id);
+        }
+        ClassName className = modelClassName(run.pkg, run.models.get(field.target));
+        return fieldBuilder(linkType(run, className, field.kind == Schema.Kind.ENTRY_ARRAY),
+            field.name, field.id).build();
+      case INVALID_LINK:
+        throw new IllegalArgumentException("Failed to create FieldSpec for "
+            + "\"" + field.name + "\"");
+      case INVALID_ARRAY_LINK:
+        throw new GeneratorException("Invalid array linkType.");
+      default:
+        return fieldBuilder(valueType(run, field), field.name, field.id).build();
+    }
+  }
+
+  /**
+   * Type of a field linking to {@code target}, see {@link #setLazyLinks(boolean)}.
+   */
+  TypeName linkType(Run run, ClassName target, boolean array) {
+    if (lazyLinks) {
+      return ParameterizedTypeName.get(
+          modelClassName(run.pkg, array ? LazyLinks.LAZY_LIST : LazyLinks.LAZY_LINK), target);
     }
+    return array ? ParameterizedTypeName.get(ClassName.get(List.class), target) : target;
+  }
 
-    if (className != null) {
-      return fieldBuilder(className, fieldName, fieldId).build();
+  /**
+   * Type of a field holding a plain value, see {@link #setTypedFields(boolean)}.
+   */
+  TypeName valueType(Run run, Schema.Field field) {
+    if (typedFields) {
+      switch (field.kind) {
+        case INTEGER:
+          return field.required ? TypeName.INT : TypeName.INT.box();
+        case NUMBER:
+          return field.required ? TypeName.DOUBLE : TypeName.DOUBLE.box();
+        case BOOLEAN:
+          return field.required ? TypeName.BOOLEAN : TypeName.BOOLEAN.box();
+        case DATE:
+          return field.required ? TypeName.LONG : TypeName.LONG.box();
+        case LOCATION:
+          return modelClassName(run.pkg, LAT_LON);
+        default:
+          break;
+      }
     }
+    return ClassName.get(classForFieldType(field.kind));
+  }
 
-    throw new IllegalArgumentException("Failed to create FieldSpec for "
-        + "\"" + fieldName + "\"");
+  /**
+   * Immutable value class of typed location fields.
+   */
+  static TypeSpec createLatLon() {
+    return TypeSpec.classBuilder(LAT_LON)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addField(double.class, "lat", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(double.class, "lon", Modifier.PRIVATE, Modifier.FINAL)
+        .addMethod(MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(double.class, "lat")
+            .addParameter(double.class, "lon")
+            .addStatement("this.lat = lat")
+            .addStatement("this.lon = lon")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("lat")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(double.class)
+            .addStatement("return lat")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("lon")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(double.class)
+            .addStatement("return lon")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("equals")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(boolean.class)
+            .addParameter(Object.class, "o")
+            .beginControlFlow("if (!(o instanceof $L))", LAT_LON)
+            .addStatement("return false")
+            .endControlFlow()
+            .addStatement("$L other = ($L) o", LAT_LON, LAT_LON)
+            .addStatement("return Double.compare(lat, other.lat) == 0 "
+                + "&& Double.compare(lon, other.lon) == 0")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("hashCode")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(int.class)
+            .addStatement("long lat = Double.doubleToLongBits(this.lat)")
+            .addStatement("long lon = Double.doubleToLongBits(this.lon)")
+            .addStatement("return 31 * (int) (lat ^ (lat >>> 32)) + (int) (lon ^ (lon >>> 32))")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("toString")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(String.class)
+            .addStatement("return $S + lat + $S + lon + '}'", LAT_LON + "{lat=", ", lon=")
+            .build())
+        .build();
   }
 
   static void throwLinkNoContentType(String contentTypeId, String fieldId) {
@@ -257,8 +901,12 @@ public class Generator {
         fieldId, contentTypeId));
   }
 
-  static ParameterizedTypeName parameterizedList(String pkg, String className) {
-    return ParameterizedTypeName.get(ClassName.get(List.class), ClassName.get(pkg, className));
+  /**
+   * Name of the generated class for a model, nested into the single file class if enabled.
+   */
+  ClassName modelClassName(String pkg, String className) {
+    return singleFile == null
+        ? ClassName.get(pkg, className) : ClassName.get(pkg, singleFile, className);
   }
 
   static String extractSingleLinkContentType(List<Map<String, Object>> validations) {
@@ -280,28 +928,49 @@ public class Generator {
     return result;
   }
 
-  static Class classForFieldType(Constants.CMAFieldType fieldType) {
-    switch (fieldType) {
-      case Boolean:
+  static Class classForFieldType(Schema.Kind kind) {
+    switch (kind) {
+      case BOOLEAN:
         return Boolean.class;
-      case Date:
+      case DATE:
         return String.class;
-      case Integer:
+      case INTEGER:
         return Integer.class;
-      case Location:
+      case LOCATION:
         return Map.class;
-      case Number:
+      case NUMBER:
         return Double.class;
-      case Object:
+      case OBJECT:
         return Map.class;
-      case Symbol:
+      case ARRAY:
+        return List.class;
+      case SYMBOL:
         return String.class;
-      case Text:
+      case TEXT:
       default:
         return String.class;
     }
   }
 
+  /**
+   * Getter of a lazy link field, returning the resolved model, or the lazy list as a list.
+   */
+  static MethodSpec lazyGetter(FieldSpec fieldSpec) {
+    ParameterizedTypeName type = (ParameterizedTypeName) fieldSpec.type;
+    TypeName target = type.typeArguments.get(0);
+    MethodSpec.Builder builder = MethodSpec.methodBuilder(
+        normalize(fieldSpec.name, CaseFormat.LOWER_CAMEL))
+        .addModifiers(Modifier.PUBLIC);
+    if (type.rawType.simpleName().equals(LazyLinks.LAZY_LIST)) {
+      return builder.returns(ParameterizedTypeName.get(ClassName.get(List.class), target))
+          .addStatement("return $N", fieldSpec)
+          .build();
+    }
+    return builder.returns(target)
+        .addStatement("return $N == null ? null : $N.get()", fieldSpec, fieldSpec)
+        .build();
+  }
+
   static MethodSpec fieldGetter(FieldSpec fieldSpec) {
     String methodName = normalize(fieldSpec.name, CaseFormat.LOWER_CAMEL);
     return MethodSpec.methodBuilder(methodName)
@@ -311,27 +980,175 @@ public class Generator {
         .build();
   }
 
+  /**
+   * Turn a content type name or field id into a java identifier of the given format: the first
+   * character is lower cased, everything but {@code [a-zA-Z0-9_]} is dropped and the result is
+   * converted from lower camel case to {@code format}. Results are memoized.
+   */
   static String normalize(String name, CaseFormat format) {
-    String normalized = name.substring(0, 1).toLowerCase();
-    if (name.length() > 1) {
-      normalized += name.substring(1);
+    return NORMALIZED.get(format).getUnchecked(name);
+  }
+
+  static String normalizeUncached(String name, CaseFormat format) {
+    StringBuilder builder = new StringBuilder(name.length() + 1);
+    if (!name.isEmpty()) {
+      char first = name.charAt(0);
+      if (first < 0x80) {
+        appendWordChar(builder, Ascii.toLowerCase(first));
+      } else {
+        String lowerCase = name.substring(0, 1).toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lowerCase.length(); i++) {
+          appendWordChar(builder, lowerCase.charAt(i));
+        }
+      }
+    }
+    for (int i = 1; i < name.length(); i++) {
+      appendWordChar(builder, name.charAt(i));
+    }
+
+    switch (format) {
+      case LOWER_CAMEL:
+        return builder.toString();
+      case UPPER_CAMEL:
+        if (builder.length() > 0) {
+          builder.setCharAt(0, Ascii.toUpperCase(builder.charAt(0)));
+        }
+        return builder.toString();
+      default:
+        return CaseFormat.LOWER_CAMEL.to(format, builder.toString());
     }
-    return CaseFormat.LOWER_CAMEL.to(format, normalized.replaceAll("[^\\w\\d]", ""));
   }
 
-  interface FileHandler {
+  private static void appendWordChar(StringBuilder builder, char c) {
+    if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_') {
+      builder.append(c);
+    }
+  }
+
+  private static Map<CaseFormat, LoadingCache<String, String>> createNormalizedCaches() {
+    Map<CaseFormat, LoadingCache<String, String>> caches =
+        new EnumMap<CaseFormat, LoadingCache<String, String>>(CaseFormat.class);
+
+    for (final CaseFormat format : CaseFormat.values()) {
+      caches.put(format, CacheBuilder.newBuilder()
+          .maximumSize(NORMALIZED_CACHE_SIZE)
+          .build(new CacheLoader<String, String>() {
+            @Override public String load(String name) {
+              return normalizeUncached(name, format);
+            }
+          }));
+    }
+    return caches;
+  }
+
+  /**
+   * Output of the generated sources. Implementations must allow concurrent calls, when models
+   * are generated on multiple threads.
+   */
+  public interface FileHandler {
+    /**
+     * Write a generated source file.
+     *
+     * @param javaFile generated source
+     * @param path     package source root
+     */
     void write(JavaFile javaFile, String path) throws IOException;
 
+    /**
+     * Delete a previously written source file, which is located at
+     * {@code <path>/<package folders>/<type name>.java}. Used to remove models of deleted content
+     * types, and to clean up if generation fails.
+     *
+     * @param file source file to delete
+     * @return whether the file was deleted
+     */
     boolean delete(File file);
   }
 
-  interface Printer {
+  /**
+   * Receives progress and warning messages.
+   */
+  public interface Printer {
     void print(String text);
   }
 
+  /**
+   * Receives timings and sizes while generating. Implementations must allow concurrent calls,
+   * when models are generated on multiple threads. All durations are in nanoseconds.
+   */
+  public interface Listener {
+    /**
+     * A page of content types arrived.
+     *
+     * @param contentTypes number of content types on the page
+     * @param nanos        time spent waiting for the page
+     */
+    void onFetch(int contentTypes, long nanos);
+
+    /**
+     * A model was generated and written. With a single file, models are reported once built,
+     * and the single file is reported with a null content type id once written.
+     *
+     * @param contentTypeId id of the content type
+     * @param className     name of the generated class
+     * @param fields        number of generated fields
+     * @param buildNanos    time spent building the source
+     * @param writeNanos    time spent in {@link FileHandler#write}
+     * @param bytes         size of the source in UTF-8
+     */
+    void onModel(String contentTypeId, String className, int fields, long buildNanos,
+                 long writeNanos, long bytes);
+
+    /**
+     * An HTTP request made by a client of a {@link ClientFactory} completed.
+     *
+     * @param url   requested url
+     * @param code  response code, 304 if a cached response was still valid, or -1 if the
+     *              request failed
+     * @param nanos time until the response headers arrived
+     * @param bytes declared length of the response body, or -1 if unknown
+     */
+    void onRequest(String url, int code, long nanos, long bytes);
+
+    /**
+     * Generation finished, successfully or not.
+     *
+     * @param nanos total time spent generating
+     */
+    void onFinish(long nanos);
+  }
+
+  /**
+   * Writes generated sources below {@code path}. Files whose content did not change are left
+   * untouched, so their modification time is preserved, others are replaced atomically.
+   */
   static class DefaultFileHandler implements FileHandler {
     @Override public void write(JavaFile javaFile, String path) throws IOException {
-      javaFile.writeTo(new File(path));
+      StringBuilder source = new StringBuilder();
+      javaFile.writeTo(source);
+      byte[] bytes = source.toString().getBytes(Charsets.UTF_8);
+
+      File file = sourceFile(path, javaFile.packageName, javaFile.typeSpec.name);
+      if (file.length() == bytes.length
+          && Arrays.equals(bytes, Files.readAllBytes(file.toPath()))) {
+        return;
+      }
+
+      File folder = file.getParentFile();
+      Files.createDirectories(folder.toPath());
+      File temp = File.createTempFile(file.getName(), ".tmp", folder);
+      try {
+        Files.write(temp.toPath(), bytes);
+        try {
+          Files.move(temp.toPath(), file.toPath(),
+              StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp.toPath(), file.toPath(),
+              StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        temp.delete();
+      }
     }
 
     @Override public boolean delete(File file) {
@@ -339,6 +1156,18 @@ public class Generator {
     }
   }
 
+  static class SynchronizedPrinter implements Printer {
+    final Printer delegate;
+
+    SynchronizedPrinter(Printer delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override public synchronized void print(String text) {
+      delegate.print(text);
+    }
+  }
+
   static class DefaultPrinter implements Printer {
     @Override public void print(String text) {
       System.out.println(text);
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.google.common.base.Charsets;
+import com.squareup.javapoet.JavaFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps generated sources in memory, keyed by their path relative to the source root, e.g.
+ * {@code com/example/Model.java}.
+ */
+public class InMemoryFileHandler implements Generator.FileHandler {
+  final Map<String, byte[]> files = new ConcurrentSkipListMap<String, byte[]>();
+  final Map<File, String> paths = new ConcurrentHashMap<File, String>();
+
+  @Override public void write(JavaFile javaFile, String path) throws IOException {
+    StringBuilder source = new StringBuilder();
+    javaFile.writeTo(source);
+
+    String relativePath = relativePath(javaFile);
+    files.put(relativePath, source.toString().getBytes(Charsets.UTF_8));
+    paths.put(Generator.sourceFile(path, javaFile.packageName, javaFile.typeSpec.name),
+        relativePath);
+  }
+
+  @Override public boolean delete(File file) {
+    String relativePath = paths.remove(file);
+    return relativePath != null && files.remove(relativePath) != null;
+  }
+
+  /**
+   * @return generated sources by relative path, sorted by path
+   */
+  public Map<String, byte[]> getFiles() {
+    return Collections.unmodifiableMap(files);
+  }
+
+  static String relativePath(JavaFile javaFile) {
+    String folder = javaFile.packageName.replace('.', '/');
+    return (folder.isEmpty() ? "" : folder + "/") + javaFile.typeSpec.name + ".java";
+  }
+}
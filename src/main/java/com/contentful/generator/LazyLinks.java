@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Generates the support classes of lazy link fields, see {@link Generator#setLazyLinks}.
+ * <p>
+ * A link field holds a {@value #LAZY_LINK} with the id of the linked entry or asset, and an
+ * array of links a {@value #LAZY_LIST} of ids. Both resolve their values on first access through
+ * a {@value #RESOLVER} supplied by the app, and keep them afterwards.
+ */
+final class LazyLinks {
+  static final String RESOLVER = "LinkResolver";
+  static final String LAZY_LINK = "LazyLink";
+  static final String LAZY_LIST = "LazyList";
+  static final TypeVariableName T = TypeVariableName.get("T");
+
+  private LazyLinks() {
+    throw new AssertionError();
+  }
+
+  /**
+   * @param resolver class name of the resolver
+   * @return public interface apps implement to look up linked entries and assets
+   */
+  static TypeSpec createResolver(ClassName resolver) {
+    return TypeSpec.interfaceBuilder(resolver)
+        .addModifiers(Modifier.PUBLIC)
+        .addJavadoc("Looks up linked entries and assets by id, e.g. in a database or cache.\n")
+        .addMethod(MethodSpec.methodBuilder("resolve")
+            .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+            .addTypeVariable(T)
+            .returns(T)
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), T), "type")
+            .addParameter(String.class, "id")
+            .build())
+        .build();
+  }
+
+  /**
+   * @param lazyLink class name of the link
+   * @param resolver class name of the resolver
+   * @return public class holding a single link
+   */
+  static TypeSpec createLazyLink(ClassName lazyLink, ClassName resolver) {
+    TypeName classOfT = ParameterizedTypeName.get(ClassName.get(Class.class), T);
+    return TypeSpec.classBuilder(lazyLink)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addTypeVariable(T)
+        .addField(classOfT, "type", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(String.class, "id", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(resolver, "resolver", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(T, "value", Modifier.PRIVATE)
+        .addField(boolean.class, "resolved", Modifier.PRIVATE)
+        .addMethod(MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(classOfT, "type")
+            .addParameter(String.class, "id")
+            .addParameter(resolver, "resolver")
+            .addStatement("this.type = type")
+            .addStatement("this.id = id")
+            .addStatement("this.resolver = resolver")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("type")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(classOfT)
+            .addStatement("return type")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("id")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(String.class)
+            .addStatement("return id")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("isResolved")
+            .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+            .returns(boolean.class)
+            .addStatement("return resolved")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("get")
+            .addJavadoc("Resolves the linked value on first access, later calls return it as "
+                + "is.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+            .returns(T)
+            .beginControlFlow("if (!resolved)")
+            .beginControlFlow("if (resolver == null)")
+            .addStatement("throw new $T($S + id)", IllegalStateException.class,
+                "No resolver for link ")
+            .endControlFlow()
+            .addStatement("value = resolver.resolve(type, id)")
+            .addStatement("resolved = true")
+            .endControlFlow()
+            .addStatement("return value")
+            .build())
+        .build();
+  }
+
+  /**
+   * @param lazyList class name of the list
+   * @param resolver class name of the resolver
+   * @return public list resolving each element on first access
+   */
+  static TypeSpec createLazyList(ClassName lazyList, ClassName resolver) {
+    TypeName classOfT = ParameterizedTypeName.get(ClassName.get(Class.class), T);
+    TypeName listOfStrings = ParameterizedTypeName.get(List.class, String.class);
+    return TypeSpec.classBuilder(lazyList)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addTypeVariable(T)
+        .superclass(ParameterizedTypeName.get(ClassName.get(AbstractList.class), T))
+        .addField(classOfT, "type", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(listOfStrings, "ids", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(resolver, "resolver", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(Object[].class, "values", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(boolean[].class, "resolved", Modifier.PRIVATE, Modifier.FINAL)
+        .addMethod(MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(classOfT, "type")
+            .addParameter(listOfStrings, "ids")
+            .addParameter(resolver, "resolver")
+            .addStatement("this.type = type")
+            .addStatement("this.ids = new $T(ids)",
+                ParameterizedTypeName.get(ArrayList.class, String.class))
+            .addStatement("this.resolver = resolver")
+            .addStatement("this.values = new Object[ids.size()]")
+            .addStatement("this.resolved = new boolean[ids.size()]")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("type")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(classOfT)
+            .addStatement("return type")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("ids")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(listOfStrings)
+            .addStatement("return $T.unmodifiableList(ids)", Collections.class)
+            .build())
+        .addMethod(MethodSpec.methodBuilder("size")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(int.class)
+            .addStatement("return ids.size()")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("get")
+            .addAnnotation(Override.class)
+            .addAnnotation(TypeAdapters.UNCHECKED)
+            .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+            .returns(T)
+            .addParameter(int.class, "index")
+            .beginControlFlow("if (!resolved[index])")
+            .beginControlFlow("if (resolver == null)")
+            .addStatement("throw new $T($S + ids.get(index))", IllegalStateException.class,
+                "No resolver for link ")
+            .endControlFlow()
+            .addStatement("values[index] = resolver.resolve(type, ids.get(index))")
+            .addStatement("resolved[index] = true")
+            .endControlFlow()
+            .addStatement("return ($T) values[index]", T)
+            .build())
+        .build();
+  }
+}
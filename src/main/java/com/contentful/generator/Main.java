@@ -16,6 +16,16 @@
 
 package com.contentful.generator;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.GnuParser;
@@ -24,30 +34,287 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
 public class Main {
+  static final int DEFAULT_WATCH_INTERVAL = 10;
+
   public static void main(String[] args) {
-    CommandLineParser parser = new GnuParser();
     Options options = constructOptions();
     try {
-      CommandLine line = parser.parse(options, args);
-
+      CommandLine line = parse(options, args);
       final String environment = line.hasOption("environment") ? line.getOptionValue("environment") : "master";
 
-      if (line.hasOption("space")
-          && line.hasOption("package")
-          && line.hasOption("folder")
+      if (line.hasOption("batch")) {
+        Stats stats = createStats(line);
+        try {
+          batch(line, stats);
+        } finally {
+          reportStats(line, stats);
+        }
+      } else if (line.hasOption("dump")
+          && line.hasOption("space")
           && line.hasOption("token")) {
 
-        new Generator().generate(
-            line.getOptionValue("space"),
-            environment,
-            line.getOptionValue("package"),
-            line.getOptionValue("folder"),
-            line.getOptionValue("token"));
+        dump(line, environment);
+      } else if (line.hasOption("package")
+          && (line.hasOption("folder")
+          || line.hasOption("source-jar")
+          || line.hasOption("compile"))
+          && (line.hasOption("snapshot")
+          || (line.hasOption("space") && line.hasOption("token")))) {
+
+        Stats stats = createStats(line);
+        try {
+          generate(line, environment, stats);
+        } finally {
+          reportStats(line, stats);
+        }
       } else {
         usage(options);
       }
     } catch (ParseException e) {
       System.err.println("Parsing failed, reason: " + e.getMessage());
+      usage(options);
+    }
+  }
+
+  /**
+   * Parse the arguments and reject combinations of options that cannot work together.
+   */
+  static CommandLine parse(Options options, String[] args) throws ParseException {
+    CommandLineParser parser = new GnuParser();
+    CommandLine line = parser.parse(options, args);
+    if (line.hasOption("incremental")
+        && (line.hasOption("source-jar") || line.hasOption("compile"))) {
+      // The manifest would be read from and written to the working directory
+      throw new ParseException("--incremental can only be used with --folder.");
+    }
+    if (line.hasOption("watch")
+        && (line.hasOption("source-jar") || line.hasOption("compile"))) {
+      // Updates are incremental, and a jar would be rewritten as a whole on every change
+      throw new ParseException("--watch can only be used with --folder.");
+    }
+    // Without Vault annotations, only the generated adapters can populate the models
+    for (String option : Arrays.asList("typed-fields", "lazy-links")) {
+      if (line.hasOption(option) && !line.hasOption("type-adapters")) {
+        throw new ParseException("--" + option + " requires --type-adapters.");
+      }
+    }
+    return line;
+  }
+
+  static void generate(CommandLine line, String environment, Stats stats)
+      throws ParseException {
+    ClientFactory clients = createClientFactory(line, stats);
+    try {
+      ContentTypeSource source;
+      if (line.hasOption("snapshot")) {
+        source = new SnapshotContentTypeSource(new File(line.getOptionValue("snapshot")));
+      } else if (line.hasOption("streaming")) {
+        source = clients.createStreamingSource(
+            line.getOptionValue("space"),
+            environment,
+            line.getOptionValue("token"),
+            pageSize(line));
+      } else {
+        source = new ClientContentTypeSource(
+            clients.create(
+                line.getOptionValue("space"),
+                environment,
+                line.getOptionValue("token")),
+            pageSize(line));
+      }
+
+      String pkg = line.getOptionValue("package");
+      if (line.hasOption("source-jar")) {
+        generateSourceJar(line, pkg, source, stats);
+        return;
+      }
+      if (line.hasOption("compile")) {
+        generateClasses(line, pkg, source, stats);
+        return;
+      }
+
+      Generator generator = createGenerator(line, null, stats);
+      String folder = line.getOptionValue("folder");
+      if (line.hasOption("watch")) {
+        long interval = number(line, "interval", DEFAULT_WATCH_INTERVAL, 1);
+        new Watcher(generator, pkg, folder, source, TimeUnit.SECONDS.toMillis(interval)).run();
+      } else {
+        generator.generate(pkg, folder, source);
+      }
+    } finally {
+      clients.close();
+    }
+  }
+
+  static void generateSourceJar(CommandLine line, String pkg, ContentTypeSource source,
+                                Stats stats) throws ParseException {
+    try {
+      ZipFileHandler fileHandler =
+          new ZipFileHandler(new File(line.getOptionValue("source-jar")));
+      try {
+        createGenerator(line, fileHandler, stats).generate(pkg, ".", source);
+      } finally {
+        fileHandler.close();
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to write source jar, reason: " + e.toString());
+      throw new GeneratorException(e);
+    }
+  }
+
+  static void generateClasses(CommandLine line, String pkg, ContentTypeSource source,
+                              Stats stats) throws ParseException {
+    CompilingFileHandler fileHandler = new CompilingFileHandler();
+    if (line.hasOption("processor-path")) {
+      fileHandler.setProcessorPath(line.getOptionValue("processor-path"));
+    }
+    createGenerator(line, fileHandler, stats).generate(pkg, ".", source);
+
+    try {
+      fileHandler.compileTo(new File(line.getOptionValue("compile")));
+    } catch (IOException e) {
+      System.err.println("Failed to write compiled models, reason: " + e.toString());
+      throw new GeneratorException(e);
+    }
+  }
+
+  static int pageSize(CommandLine line) throws ParseException {
+    return number(line, "page-size", Generator.DEFAULT_PAGE_SIZE, 1);
+  }
+
+  static Generator createGenerator(CommandLine line, Generator.FileHandler fileHandler,
+                                   Stats stats) throws ParseException {
+    Generator generator = new Generator(fileHandler).setListener(stats);
+    if (line.hasOption("incremental")) {
+      generator.setIncremental(true);
+    }
+    generator.setThreads(number(line, "threads", 1, 1));
+    if (line.hasOption("single-file")) {
+      generator.setSingleFile(line.getOptionValue("single-file"));
+    }
+    if (line.hasOption("type-adapters")) {
+      generator.setTypeAdapters(true);
+    }
+    if (line.hasOption("typed-fields")) {
+      generator.setTypedFields(true);
+    }
+    if (line.hasOption("lazy-links")) {
+      generator.setLazyLinks(true);
+    }
+    if (line.hasOption("include")) {
+      generator.setIncludes(patterns(line.getOptionValue("include")));
+    }
+    if (line.hasOption("exclude")) {
+      generator.setExcludes(patterns(line.getOptionValue("exclude")));
+    }
+    return generator;
+  }
+
+  /**
+   * @return value of a numeric option, or {@code defaultValue} if it is not set
+   * @throws ParseException if the value is not a number, or less than {@code min}
+   */
+  static int number(CommandLine line, String option, int defaultValue, int min)
+      throws ParseException {
+    if (!line.hasOption(option)) {
+      return defaultValue;
+    }
+    String value = line.getOptionValue(option);
+    try {
+      int number = Integer.parseInt(value);
+      if (number >= min) {
+        return number;
+      }
+    } catch (NumberFormatException ignored) {
+    }
+    throw new ParseException("--" + option + " must be a number of at least " + min
+        + ", was '" + value + "'.");
+  }
+
+  static List<String> patterns(String value) {
+    return Splitter.on(',').trimResults().omitEmptyStrings().splitToList(value);
+  }
+
+  static ClientFactory createClientFactory(CommandLine line, Stats stats)
+      throws ParseException {
+    ClientFactory clients = new ClientFactory().setListener(stats);
+    if (line.hasOption("endpoint")) {
+      clients.setCoreEndpoint(line.getOptionValue("endpoint"));
+    }
+    if (line.hasOption("cache-dir")) {
+      clients.setCacheDirectory(new File(line.getOptionValue("cache-dir")));
+    }
+    clients.setMaxRetries(number(line, "retries", ClientFactory.DEFAULT_MAX_RETRIES, 0));
+    clients.setTimeout(number(line, "timeout", 0, 0), TimeUnit.SECONDS);
+    clients.setMaxConcurrentRequests(number(line, "max-requests", 0, 0));
+    return clients;
+  }
+
+  static Stats createStats(CommandLine line) {
+    return line.hasOption("stats") || line.hasOption("stats-json") ? new Stats() : null;
+  }
+
+  static void reportStats(CommandLine line, Stats stats) {
+    if (stats == null) {
+      return;
+    }
+    if (line.hasOption("stats")) {
+      System.out.println(stats.summary());
+    }
+    if (line.hasOption("stats-json")) {
+      try {
+        Files.asCharSink(new File(line.getOptionValue("stats-json")), Charsets.UTF_8)
+            .write(SnapshotContentTypeSource.GSON.toJson(stats.toJson()));
+      } catch (IOException e) {
+        System.err.println("Failed to write stats, reason: " + e.toString());
+      }
+    }
+  }
+
+  static void batch(CommandLine line, Stats stats) throws ParseException {
+    int threads = number(line, "batch-threads", 1, 1);
+
+    ClientFactory clients = createClientFactory(line, stats);
+    try {
+      Batch batch = Batch.load(new File(line.getOptionValue("batch")),
+          line.getOptionValue("token"));
+
+      // Targets are fetched by the generator, not through a source
+      Generator generator = createGenerator(line, null, stats).setPageSize(pageSize(line));
+      List<Batch.Result> results = batch.generate(generator, clients, threads);
+      int failed = 0;
+      for (Batch.Result result : results) {
+        if (result.error != null) {
+          failed++;
+        }
+      }
+      if (failed > 0) {
+        throw new GeneratorException(failed + " of " + results.size() + " batch targets failed.");
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to read batch configuration, reason: " + e.toString());
+      throw new GeneratorException(e);
+    } finally {
+      clients.close();
+    }
+  }
+
+  static void dump(CommandLine line, String environment) throws ParseException {
+    ClientFactory clients = createClientFactory(line, null);
+    ContentTypeSource source = new ClientContentTypeSource(
+        clients.create(
+            line.getOptionValue("space"),
+            environment,
+            line.getOptionValue("token")),
+        pageSize(line));
+
+    try {
+      SnapshotContentTypeSource.write(source, new File(line.getOptionValue("dump")));
+    } catch (Exception e) {
+      System.err.println("Failed to dump content types, reason: " + e.toString());
+      throw new GeneratorException(e);
+    } finally {
+      clients.close();
     }
   }
 
@@ -57,7 +324,54 @@ public class Main {
         .addOption("e", "environment", true, "Environment ID, 'master' if not set.")
         .addOption("t", "token", true, "Management API Access Token")
         .addOption("p", "package", true, "Destination package name")
-        .addOption("f", "folder", true, "Destination folder path");
+        .addOption("f", "folder", true, "Destination folder path")
+        .addOption(null, "source-jar", true, "Write all sources into this jar, instead of a "
+            + "folder.")
+        .addOption(null, "compile", true, "Compile all models in memory into this jar or class "
+            + "folder, instead of writing sources.")
+        .addOption(null, "processor-path", true, "Annotation processor path used with "
+            + "--compile, e.g. the Vault compiler and its dependencies.")
+        .addOption(null, "page-size", true, "Content types fetched per request, "
+            + Generator.DEFAULT_PAGE_SIZE + " if not set.")
+        .addOption(null, "threads", true, "Number of threads generating models, 1 if not set.")
+        .addOption(null, "single-file", true, "Generate all models as nested classes of a "
+            + "single class with this name, e.g. 'Models'.")
+        .addOption(null, "type-adapters", false, "Generate a Gson TypeAdapter for each model.")
+        .addOption(null, "typed-fields", false, "Use primitives for required numbers and "
+            + "booleans, epoch milliseconds for dates and a LatLon class for locations, with "
+            + "--type-adapters.")
+        .addOption(null, "lazy-links", false, "Generate link fields as references resolved on "
+            + "first access through a LinkResolver, with --type-adapters.")
+        .addOption(null, "include", true, "Comma separated content type ids to generate, "
+            + "together with the content types they link to. '*' and '?' are wildcards.")
+        .addOption(null, "exclude", true, "Comma separated content type ids to skip, unless "
+            + "linked to by another content type. '*' and '?' are wildcards.")
+        .addOption(null, "incremental", false, "Only regenerate models of changed content types, "
+            + "with --folder.")
+        .addOption(null, "endpoint", true, "Management API base url, e.g. of a proxy or a "
+            + "local mock.")
+        .addOption(null, "cache-dir", true, "Cache responses in this directory, so unchanged "
+            + "content types are not downloaded again.")
+        .addOption(null, "retries", true, "Retries of requests failing with a rate limit, server "
+            + "or network error, " + ClientFactory.DEFAULT_MAX_RETRIES + " if not set.")
+        .addOption(null, "timeout", true, "Connect and read timeout of requests in seconds.")
+        .addOption(null, "max-requests", true, "Maximum number of concurrent requests.")
+        .addOption(null, "snapshot", true, "Generate from a content types snapshot file or "
+            + "directory instead of a space.")
+        .addOption(null, "streaming", false, "Parse content types while they are downloaded, "
+            + "instead of reading whole responses first.")
+        .addOption(null, "dump", true, "Save the content types of a space to a snapshot file.")
+        .addOption(null, "watch", false, "Keep running and update models whenever content "
+            + "types change, with --folder.")
+        .addOption(null, "interval", true, "Seconds between two checks for changes in --watch "
+            + "mode, " + DEFAULT_WATCH_INTERVAL + " if not set.")
+        .addOption(null, "batch", true, "Generate all targets listed in a JSON configuration "
+            + "file, --token is used for targets without one.")
+        .addOption(null, "batch-threads", true, "Number of batch targets generated concurrently, "
+            + "1 if not set.")
+        .addOption(null, "stats", false, "Print timings and sizes of all generation steps.")
+        .addOption(null, "stats-json", true, "Write timings and sizes of all generation steps "
+            + "into this JSON file.");
   }
 
   public static void usage(Options options) {
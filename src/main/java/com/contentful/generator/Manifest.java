@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fingerprints of the models generated into a package folder, used to skip regenerating
+ * content types whose schema did not change since the previous run.
+ * <p>
+ * Stored as a text file next to the generated sources, the first line holds the generator
+ * version and the name of the single file class, if any, followed by one
+ * {@code id, class name, fingerprint} line per content type.
+ */
+final class Manifest {
+  static final String FILE_NAME = ".generator-manifest";
+
+  final String version;
+  final Map<String, Entry> previous;
+  final Map<String, Entry> current;
+  /** Single file class of the previous run, null if it wrote one file per model */
+  final String previousSingleFile;
+  /** Single file class of the current run, null if it writes one file per model */
+  String singleFile;
+  int generated;
+  int skipped;
+
+  private Manifest(String version, Map<String, Entry> previous, String previousSingleFile) {
+    this.version = version;
+    this.previous = previous;
+    this.current = new TreeMap<String, Entry>();
+    this.previousSingleFile = previousSingleFile;
+  }
+
+  static Manifest empty(String version) {
+    return new Manifest(version, Collections.<String, Entry>emptyMap(), null);
+  }
+
+  /**
+   * Load the manifest stored in {@code folder}. Entries written by a different generator version
+   * never count as up to date, but are still used to find models of removed content types.
+   */
+  static Manifest load(File folder, String version) throws IOException {
+    File file = new File(folder, FILE_NAME);
+    if (!file.isFile()) {
+      return empty(version);
+    }
+
+    List<String> lines = Files.readLines(file, Charsets.UTF_8);
+    List<String> header = Splitter.on('\t').splitToList(lines.isEmpty() ? "" : lines.get(0));
+    boolean sameVersion = header.get(0).equals(version);
+    Map<String, Entry> entries = new TreeMap<String, Entry>();
+    for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+      List<String> parts = Splitter.on('\t').splitToList(line);
+      if (parts.size() == 3) {
+        entries.put(parts.get(0),
+            new Entry(parts.get(1), sameVersion ? parts.get(2) : null));
+      }
+    }
+    return new Manifest(version, entries, header.size() > 1 ? header.get(1) : null);
+  }
+
+  /**
+   * Whether the model for the given content type can be kept as is, records the content type as
+   * part of the current run either way.
+   */
+  boolean isUpToDate(String id, String className, String fingerprint, File source) {
+    current.put(id, new Entry(className, fingerprint));
+
+    Entry entry = previous.get(id);
+    return entry != null
+        && className.equals(entry.className)
+        && entry.fingerprint != null
+        && entry.fingerprint.equals(fingerprint)
+        && source.isFile();
+  }
+
+  /**
+   * Class names of previously generated models which are not part of the current run.
+   */
+  List<String> stale() {
+    List<String> result = new ArrayList<String>();
+    for (Map.Entry<String, Entry> entry : previous.entrySet()) {
+      String className = entry.getValue().className;
+      Entry now = current.get(entry.getKey());
+      if ((now == null || !now.className.equals(className)) && !isCurrentClass(className)) {
+        result.add(className);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Whether the output layout switched between one file per model and a single file, or the
+   * single file class was renamed.
+   */
+  boolean layoutChanged() {
+    return !Objects.equal(previousSingleFile, singleFile);
+  }
+
+  /**
+   * Whether the layout or the entries of the current run differ from the stored ones.
+   */
+  boolean changed() {
+    if (layoutChanged() || !previous.keySet().equals(current.keySet())) {
+      return true;
+    }
+    for (Map.Entry<String, Entry> entry : current.entrySet()) {
+      Entry stored = previous.get(entry.getKey());
+      if (!stored.className.equals(entry.getValue().className)
+          || stored.fingerprint == null
+          || !stored.fingerprint.equals(entry.getValue().fingerprint)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isCurrentClass(String className) {
+    for (Entry entry : current.values()) {
+      if (entry.className.equals(className)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void save(File folder) throws IOException {
+    StringBuilder builder = new StringBuilder(version);
+    if (singleFile != null) {
+      builder.append('\t').append(singleFile);
+    }
+    builder.append('\n');
+    for (Map.Entry<String, Entry> entry : current.entrySet()) {
+      builder.append(entry.getKey())
+          .append('\t').append(entry.getValue().className)
+          .append('\t').append(entry.getValue().fingerprint)
+          .append('\n');
+    }
+
+    folder.mkdirs();
+    Files.asCharSink(new File(folder, FILE_NAME), Charsets.UTF_8).write(builder);
+  }
+
+  static final class Entry {
+    final String className;
+    final String fingerprint;
+
+    Entry(String className, String fingerprint) {
+      this.className = className;
+      this.fingerprint = fingerprint;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.google.common.collect.Ordering;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * State of a single {@link Generator#generate} call. Keeping it out of the generator allows one
+ * generator to serve many concurrent and consecutive calls.
+ */
+final class Run {
+  final String pkg;
+  final String path;
+  /** Class names of the content types seen so far, by content type id */
+  final Map<String, String> models = new ConcurrentHashMap<String, String>();
+  /** Content type ids by class name, only accessed while reading content types */
+  final Map<String, String> ids = new HashMap<String, String>();
+  /** Content types waiting for the content types they link to */
+  final List<Schema> pending = new ArrayList<Schema>();
+  final List<Future<?>> tasks = new ArrayList<Future<?>>();
+  final List<File> written = Collections.synchronizedList(new ArrayList<File>());
+  /** Models collected for the single file, null if every model gets its own file */
+  Map<String, TypeSpec> nested;
+  /** Whether a model has a typed location field, which needs the location class */
+  boolean locations;
+  ExecutorService workers;
+  Manifest manifest;
+
+  Run(String pkg, String path) {
+    this.pkg = pkg;
+    this.path = path;
+  }
+
+  /**
+   * Record the class name of a content type. Two content types sharing a class name would
+   * overwrite each others model depending on the order they arrive in, so this fails instead.
+   */
+  void register(Schema schema) {
+    String other = ids.put(schema.className, schema.id);
+    if (other != null && !other.equals(schema.id)) {
+      throw new GeneratorException(String.format(
+          "Content types \"%s\" and \"%s\" both map to model \"%s\".",
+          Ordering.natural().min(other, schema.id), Ordering.natural().max(other, schema.id),
+          schema.className));
+    }
+    models.put(schema.id, schema.className);
+  }
+
+  File sourceFile(String className) {
+    return Generator.sourceFile(path, pkg, className);
+  }
+
+  boolean linksResolved(Schema schema) {
+    for (Schema.Field field : schema.fields) {
+      if (field.target != null && !models.containsKey(field.target)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.model.CMAContentType;
+import com.contentful.java.cma.model.CMAField;
+import com.google.common.base.CaseFormat;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact form of a content type, holding only what its model is generated from. Built once
+ * per fetched content type, so the full {@link CMAContentType} with its raw validations and
+ * metadata can be dropped right away.
+ */
+final class Schema {
+  static final Interner<String> IDS = Interners.newWeakInterner();
+  static final Field[] NO_FIELDS = new Field[0];
+
+  final String id;
+  final String name;
+  final String className;
+  final Field[] fields;
+
+  Schema(String id, String name, Field[] fields) {
+    this.id = IDS.intern(id);
+    this.name = name;
+    this.className = name == null ? null : Generator.normalize(name, CaseFormat.UPPER_CAMEL);
+    this.fields = fields;
+  }
+
+  /**
+   * @return schema of the given content type, without disabled and omitted fields
+   */
+  static Schema of(CMAContentType contentType) {
+    List<CMAField> source = contentType.getFields();
+    List<Field> fields = new ArrayList<Field>(source == null ? 0 : source.size());
+    if (source != null) {
+      for (CMAField field : source) {
+        if (!field.isDisabled() && !field.isOmitted()) {
+          fields.add(Field.of(field, Generator.normalize(field.getId(), CaseFormat.LOWER_CAMEL)));
+        }
+      }
+    }
+    return new Schema(contentType.getId(), contentType.getName(), fields.toArray(NO_FIELDS));
+  }
+
+  boolean has(Kind kind) {
+    for (Field field : fields) {
+      if (field.kind == kind) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  enum Kind {
+    SYMBOL,
+    TEXT,
+    DATE,
+    INTEGER,
+    NUMBER,
+    BOOLEAN,
+    LOCATION,
+    OBJECT,
+    /** Array of values */
+    ARRAY,
+    ASSET,
+    ENTRY,
+    ASSET_ARRAY,
+    ENTRY_ARRAY,
+    /** Link to neither assets nor entries */
+    INVALID_LINK,
+    /** Array of links to neither assets nor entries */
+    INVALID_ARRAY_LINK
+  }
+
+  static final class Field {
+    final String id;
+    final String name;
+    final Kind kind;
+    /** Id of the linked content type, only set for entry links with a single target */
+    final String target;
+    /** Whether entries always have a value for this field, only set for non link fields */
+    final boolean required;
+
+    Field(String id, String name, Kind kind, String target) {
+      this(id, name, kind, target, false);
+    }
+
+    Field(String id, String name, Kind kind, String target, boolean required) {
+      this.id = IDS.intern(id);
+      this.name = name;
+      this.kind = kind;
+      this.target = target == null ? null : IDS.intern(target);
+      this.required = required;
+    }
+
+    /**
+     * Whether this is a valid link or array of links to entries or assets.
+     */
+    boolean isLink() {
+      return kind == Kind.ASSET || kind == Kind.ASSET_ARRAY
+          || kind == Kind.ENTRY || kind == Kind.ENTRY_ARRAY;
+    }
+
+    static Field of(CMAField field, String name) {
+      switch (field.getType()) {
+        case Link:
+          return link(field.getId(), name, field.getLinkType(), field.getValidations(), false);
+        case Array:
+          Map arrayItems = field.getArrayItems();
+          if (arrayItems != null && "Link".equals(arrayItems.get("type"))) {
+            //noinspection unchecked
+            return link(field.getId(), name, (String) arrayItems.get("linkType"),
+                (List<Map<String, Object>>) arrayItems.get("validations"), true);
+          }
+          return new Field(field.getId(), name, Kind.ARRAY, null, field.isRequired());
+        case Symbol:
+          return new Field(field.getId(), name, Kind.SYMBOL, null, field.isRequired());
+        case Date:
+          return new Field(field.getId(), name, Kind.DATE, null, field.isRequired());
+        case Integer:
+          return new Field(field.getId(), name, Kind.INTEGER, null, field.isRequired());
+        case Number:
+          return new Field(field.getId(), name, Kind.NUMBER, null, field.isRequired());
+        case Boolean:
+          return new Field(field.getId(), name, Kind.BOOLEAN, null, field.isRequired());
+        case Location:
+          return new Field(field.getId(), name, Kind.LOCATION, null, field.isRequired());
+        case Object:
+          return new Field(field.getId(), name, Kind.OBJECT, null, field.isRequired());
+        case Text:
+        default:
+          return new Field(field.getId(), name, Kind.TEXT, null, field.isRequired());
+      }
+    }
+
+    static Field link(String id, String name, String linkType,
+                      List<Map<String, Object>> validations, boolean array) {
+      if ("Asset".equals(linkType)) {
+        return new Field(id, name, array ? Kind.ASSET_ARRAY : Kind.ASSET, null);
+      } else if ("Entry".equals(linkType)) {
+        return new Field(id, name, array ? Kind.ENTRY_ARRAY : Kind.ENTRY,
+            Generator.extractSingleLinkContentType(validations));
+      }
+      return new Field(id, name, array ? Kind.INVALID_ARRAY_LINK : Kind.INVALID_LINK, null);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.model.CMAContentType;
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads content types from a local snapshot, so models can be generated without access to the
+ * Management API.
+ * <p>
+ * A snapshot is either a JSON file in the shape of a content types response (an object with an
+ * {@code items} array) or of a single content type, or a directory of such files.
+ */
+public class SnapshotContentTypeSource implements ContentTypeSource {
+  static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  final File file;
+
+  /**
+   * @param file snapshot file or directory
+   */
+  public SnapshotContentTypeSource(File file) {
+    this.file = file;
+  }
+
+  @Override public void read(PageConsumer consumer) throws Exception {
+    if (file.isDirectory()) {
+      File[] files = file.listFiles();
+      if (files == null) {
+        throw new IOException("Failed to list snapshot directory \"" + file + "\".");
+      }
+
+      Arrays.sort(files);
+      for (File child : files) {
+        if (child.isFile() && child.getName().endsWith(".json")) {
+          consumer.onPage(readFile(child));
+        }
+      }
+    } else {
+      consumer.onPage(readFile(file));
+    }
+  }
+
+  static List<CMAContentType> readFile(File file) throws IOException {
+    Reader reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
+    try {
+      JsonObject json = new JsonParser().parse(reader).getAsJsonObject();
+      List<CMAContentType> result = new ArrayList<CMAContentType>();
+
+      JsonArray items = json.getAsJsonArray("items");
+      if (items == null) {
+        result.add(GSON.fromJson(json, CMAContentType.class));
+      } else {
+        for (JsonElement item : items) {
+          result.add(GSON.fromJson(item, CMAContentType.class));
+        }
+      }
+      return result;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Save all content types of {@code source} as a single snapshot file.
+   *
+   * @param source content types to save
+   * @param file   snapshot file to write
+   */
+  public static void write(ContentTypeSource source, File file) throws Exception {
+    final JsonArray items = new JsonArray();
+    source.read(new PageConsumer() {
+      @Override public void onPage(List<CMAContentType> page) {
+        for (CMAContentType contentType : page) {
+          items.add(GSON.toJsonTree(contentType));
+        }
+      }
+    });
+
+    JsonObject snapshot = new JsonObject();
+    snapshot.add("items", items);
+
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8);
+    try {
+      GSON.toJson(snapshot, writer);
+    } finally {
+      writer.close();
+    }
+  }
+}
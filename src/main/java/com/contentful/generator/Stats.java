@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Generator.Listener} collecting totals of a run, which can be printed as a summary or
+ * exported as JSON.
+ * <p>
+ * Build and write times are summed over all models, with multiple threads they can exceed the
+ * total time.
+ */
+public class Stats implements Generator.Listener {
+  int pages;
+  int contentTypes;
+  long fetchNanos;
+  long buildNanos;
+  long writeNanos;
+  long bytes;
+  int fields;
+  int requests;
+  int notModifiedRequests;
+  int failedRequests;
+  long requestNanos;
+  long responseBytes;
+  long totalNanos;
+  final List<Model> models = new ArrayList<Model>();
+
+  @Override public synchronized void onFetch(int contentTypes, long nanos) {
+    this.pages++;
+    this.contentTypes += contentTypes;
+    this.fetchNanos += nanos;
+  }
+
+  @Override public synchronized void onModel(String contentTypeId, String className, int fields,
+                                             long buildNanos, long writeNanos, long bytes) {
+    if (contentTypeId != null) {
+      models.add(new Model(contentTypeId, className, fields, buildNanos, writeNanos, bytes));
+    }
+    this.fields += fields;
+    this.buildNanos += buildNanos;
+    this.writeNanos += writeNanos;
+    this.bytes += bytes;
+  }
+
+  @Override public synchronized void onRequest(String url, int code, long nanos, long bytes) {
+    requests++;
+    if (code == 304) {
+      notModifiedRequests++;
+    } else if (code < 200 || code >= 400) {
+      failedRequests++;
+    }
+    requestNanos += nanos;
+    if (bytes > 0) {
+      responseBytes += bytes;
+    }
+  }
+
+  @Override public synchronized void onFinish(long nanos) {
+    totalNanos += nanos;
+  }
+
+  /**
+   * @return human readable summary, one line per phase
+   */
+  public synchronized String summary() {
+    StringBuilder builder = new StringBuilder()
+        .append(String.format("Fetched %d content types in %d pages, %d ms.\n",
+            contentTypes, pages, millis(fetchNanos)))
+        .append(String.format("Built %d models with %d fields, %d ms.\n",
+            models.size(), fields, millis(buildNanos)))
+        .append(String.format("Wrote %d bytes, %d ms.\n", bytes, millis(writeNanos)))
+        .append(String.format("Made %d HTTP requests (%d not modified, %d failed), %d ms, "
+                + "received %d bytes.\n",
+            requests, notModifiedRequests, failedRequests, millis(requestNanos), responseBytes));
+
+    List<Model> slowest = slowest();
+    if (!slowest.isEmpty()) {
+      Model model = slowest.get(0);
+      builder.append(String.format("Slowest model %s (%s), %d ms.\n",
+          model.className, model.contentTypeId, millis(model.buildNanos + model.writeNanos)));
+    }
+    return builder.append(String.format("Total %d ms.", millis(totalNanos))).toString();
+  }
+
+  /**
+   * @return totals and per model numbers, all durations in milliseconds
+   */
+  public synchronized JsonObject toJson() {
+    JsonObject fetch = new JsonObject();
+    fetch.addProperty("pages", pages);
+    fetch.addProperty("contentTypes", contentTypes);
+    fetch.addProperty("millis", millis(fetchNanos));
+
+    JsonObject http = new JsonObject();
+    http.addProperty("requests", requests);
+    http.addProperty("notModified", notModifiedRequests);
+    http.addProperty("failed", failedRequests);
+    http.addProperty("millis", millis(requestNanos));
+    http.addProperty("bytes", responseBytes);
+
+    JsonArray array = new JsonArray();
+    for (Model model : slowest()) {
+      JsonObject object = new JsonObject();
+      object.addProperty("contentType", model.contentTypeId);
+      object.addProperty("className", model.className);
+      object.addProperty("fields", model.fields);
+      object.addProperty("buildMillis", millis(model.buildNanos));
+      object.addProperty("writeMillis", millis(model.writeNanos));
+      object.addProperty("bytes", model.bytes);
+      array.add(object);
+    }
+
+    JsonObject result = new JsonObject();
+    result.addProperty("totalMillis", millis(totalNanos));
+    result.add("fetch", fetch);
+    result.addProperty("buildMillis", millis(buildNanos));
+    result.addProperty("writeMillis", millis(writeNanos));
+    result.addProperty("bytes", bytes);
+    result.addProperty("fields", fields);
+    result.add("http", http);
+    result.add("models", array);
+    return result;
+  }
+
+  private List<Model> slowest() {
+    List<Model> result = new ArrayList<Model>(models);
+    Collections.sort(result, new Comparator<Model>() {
+      @Override public int compare(Model a, Model b) {
+        return Long.compare(b.buildNanos + b.writeNanos, a.buildNanos + a.writeNanos);
+      }
+    });
+    return result;
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  static final class Model {
+    final String contentTypeId;
+    final String className;
+    final int fields;
+    final long buildNanos;
+    final long writeNanos;
+    final long bytes;
+
+    Model(String contentTypeId, String className, int fields, long buildNanos, long writeNanos,
+          long bytes) {
+      this.contentTypeId = contentTypeId;
+      this.className = className;
+      this.fields = fields;
+      this.buildNanos = buildNanos;
+      this.writeNanos = writeNanos;
+      this.bytes = bytes;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.model.CMAContentType;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Fetches content types from the Management API, parsing each response with a pull parser
+ * while it is downloaded. Every content type is handed to the consumer as soon as it is parsed,
+ * as a page of its own, so memory use does not grow with the size of the space and models are
+ * generated before the download finishes.
+ */
+public class StreamingContentTypeSource implements ContentTypeSource {
+  static final String DEFAULT_ENDPOINT = "https://api.contentful.com/";
+
+  final Call.Factory client;
+  final HttpUrl url;
+  final String token;
+  final int pageSize;
+
+  /**
+   * @param client        http client, e.g. an {@code OkHttpClient}
+   * @param spaceId       space id
+   * @param environmentId environment id
+   * @param token         management api access token
+   * @param pageSize      maximum number of content types fetched with a single request
+   */
+  public StreamingContentTypeSource(Call.Factory client, String spaceId, String environmentId,
+                                    String token, int pageSize) {
+    this(client, DEFAULT_ENDPOINT, spaceId, environmentId, token, pageSize);
+  }
+
+  StreamingContentTypeSource(Call.Factory client, String endpoint, String spaceId,
+                             String environmentId, String token, int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive, was " + pageSize + ".");
+    }
+    this.client = client;
+    this.url = HttpUrl.get(endpoint).newBuilder()
+        .addPathSegment("spaces")
+        .addPathSegment(spaceId)
+        .addPathSegment("environments")
+        .addPathSegment(environmentId)
+        .addPathSegment("content_types")
+        .build();
+    this.token = token;
+    this.pageSize = pageSize;
+  }
+
+  @Override public void read(PageConsumer consumer) throws Exception {
+    int skip = 0;
+    while (true) {
+      Request request = new Request.Builder()
+          .url(url.newBuilder()
+              .addQueryParameter("skip", Integer.toString(skip))
+              .addQueryParameter("limit", Integer.toString(pageSize))
+              .build())
+          .header("Authorization", "Bearer " + token)
+          .header("X-Contentful-User-Agent", "app Generator.java/" + Generator.getVersion())
+          .build();
+
+      int count = 0;
+      int total = -1;
+      Response response = client.newCall(request).execute();
+      try {
+        if (!response.isSuccessful()) {
+          throw new IOException("Failed to fetch content types, HTTP " + response.code()
+              + ": " + response.body().string());
+        }
+
+        JsonReader reader = new JsonReader(response.body().charStream());
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          if ("total".equals(name)) {
+            total = reader.nextInt();
+          } else if ("items".equals(name)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+              CMAContentType contentType =
+                  SnapshotContentTypeSource.GSON.fromJson(reader, CMAContentType.class);
+              count++;
+              consumer.onPage(Collections.singletonList(contentType));
+            }
+            reader.endArray();
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+      } finally {
+        response.close();
+      }
+
+      // The server may cap the limit, so only the total tells whether more pages follow
+      skip += count;
+      if (count == 0 || (total >= 0 ? skip >= total : count < pageSize)) {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,517 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Generates a Gson {@code TypeAdapter} per model, reading and writing entries with a
+ * {@code JsonReader} and {@code JsonWriter} instead of reflection.
+ * <p>
+ * Adapters handle entries of a single locale, {@code {"sys": {...}, "fields": {...}}}. Only the
+ * fields are read, linked entries are read with the adapters of their models, so they have to
+ * be included inline. Lazy links only keep the ids of linked entries and assets. Values without
+ * a dedicated reader (assets, locations, objects and arrays) use the adapters Gson provides for
+ * their type. Typed dates are parsed by a small generated ISO 8601 parser, as Gson's own one is
+ * internal API.
+ */
+final class TypeAdapters {
+  static final String SUFFIX = "TypeAdapter";
+  static final ClassName GSON = ClassName.get("com.google.gson", "Gson");
+  static final ClassName TYPE_ADAPTER = ClassName.get("com.google.gson", "TypeAdapter");
+  static final ClassName TYPE_ADAPTER_FACTORY =
+      ClassName.get("com.google.gson", "TypeAdapterFactory");
+  static final ClassName TYPE_TOKEN = ClassName.get("com.google.gson.reflect", "TypeToken");
+  static final ClassName JSON_READER = ClassName.get("com.google.gson.stream", "JsonReader");
+  static final ClassName JSON_WRITER = ClassName.get("com.google.gson.stream", "JsonWriter");
+  static final ClassName JSON_TOKEN = ClassName.get("com.google.gson.stream", "JsonToken");
+  static final ClassName JSON_SYNTAX_EXCEPTION =
+      ClassName.get("com.google.gson", "JsonSyntaxException");
+  static final ClassName IO_EXCEPTION = ClassName.get("java.io", "IOException");
+  static final AnnotationSpec UNCHECKED = AnnotationSpec.builder(SuppressWarnings.class)
+      .addMember("value", "$S", "unchecked")
+      .build();
+
+  private TypeAdapters() {
+    throw new AssertionError();
+  }
+
+  /**
+   * @param model       class name of the model
+   * @param schema      content type of the model
+   * @param fieldSpecs  fields of the model, one per field of {@code schema} in the same order
+   * @param typed       whether the fields are typed, see {@link Generator#setTypedFields}
+   * @param lazy        whether link fields are lazy, see {@link Generator#setLazyLinks}
+   * @return public adapter class for the model, named after the model with {@value #SUFFIX}
+   */
+  static TypeSpec create(ClassName model, Schema schema, List<FieldSpec> fieldSpecs,
+                         boolean typed, boolean lazy) {
+    ClassName adapter = model.peerClass(model.simpleName() + SUFFIX);
+    TypeSpec.Builder builder = TypeSpec.classBuilder(adapter)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .superclass(ParameterizedTypeName.get(TYPE_ADAPTER, model));
+
+    MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(GSON, "gson");
+    if (lazy) {
+      ClassName resolver = model.peerClass(LazyLinks.RESOLVER);
+      builder.addField(resolver, "resolver", Modifier.PRIVATE, Modifier.FINAL)
+          .addMethod(factoryMethod(model, adapter, resolver));
+      constructor.addParameter(resolver, "resolver")
+          .addStatement("this.resolver = resolver");
+      builder.addMethods(linkMethods());
+    } else {
+      builder.addField(factoryField(model, adapter));
+    }
+    CodeBlock.Builder read = CodeBlock.builder();
+    CodeBlock.Builder write = CodeBlock.builder();
+    boolean unchecked = false;
+    boolean dates = false;
+    TypeName latLon = null;
+
+    for (int i = 0; i < fieldSpecs.size(); i++) {
+      Schema.Field field = schema.fields[i];
+      FieldSpec fieldSpec = fieldSpecs.get(i);
+      read.add("case $S:\n", field.id).indent();
+      String reader = reader(field.kind);
+      if (lazy && field.isLink()) {
+        ParameterizedTypeName type = (ParameterizedTypeName) fieldSpec.type;
+        boolean array = type.rawType.simpleName().equals(LazyLinks.LAZY_LIST);
+        String linkType = field.kind == Schema.Kind.ASSET || field.kind == Schema.Kind.ASSET_ARRAY
+            ? "Asset" : "Entry";
+        read.addStatement("result.$N = new $T($T.class, $L(in), resolver)", fieldSpec, type,
+            type.typeArguments.get(0), array ? "readLinkIds" : "readLinkId");
+        write.addStatement("$L(out.name($S), $S, value.$N == null ? null : value.$N.$L())",
+            array ? "writeLinks" : "writeLink", field.id, linkType, fieldSpec, fieldSpec,
+            array ? "ids" : "id");
+      } else if (typed && field.kind == Schema.Kind.DATE) {
+        read.addStatement("result.$N = parseDate(in.nextString())", fieldSpec);
+        write.addStatement("out.name($S).value(formatDate(value.$N))", field.id, fieldSpec);
+        dates = true;
+      } else if (typed && field.kind == Schema.Kind.LOCATION) {
+        read.addStatement("result.$N = readLatLon(in)", fieldSpec);
+        write.addStatement("writeLatLon(out.name($S), value.$N)", field.id, fieldSpec);
+        latLon = fieldSpec.type;
+      } else if (reader != null) {
+        read.addStatement("result.$N = in.$L()", fieldSpec, reader);
+        write.addStatement("out.name($S).value(value.$N)", field.id, fieldSpec);
+      } else {
+        String name = fieldSpec.name + "Adapter";
+        builder.addField(ParameterizedTypeName.get(TYPE_ADAPTER, fieldSpec.type), name,
+            Modifier.PRIVATE, Modifier.FINAL);
+        if (fieldSpec.type instanceof ParameterizedTypeName) {
+          ParameterizedTypeName type = (ParameterizedTypeName) fieldSpec.type;
+          constructor.addStatement("this.$L = ($T) gson.getAdapter($T.getParameterized($T.class, "
+                  + "$T.class))", name, ParameterizedTypeName.get(TYPE_ADAPTER, type), TYPE_TOKEN,
+              type.rawType, type.typeArguments.get(0));
+          unchecked = true;
+        } else {
+          constructor.addStatement("this.$L = gson.getAdapter($T.class)", name, fieldSpec.type);
+        }
+        read.addStatement("result.$N = $L.read(in)", fieldSpec, name);
+        write.addStatement("$L.write(out.name($S), value.$N)", name, field.id, fieldSpec);
+      }
+      read.addStatement("break").unindent();
+    }
+    if (unchecked) {
+      constructor.addAnnotation(UNCHECKED);
+    }
+    if (dates) {
+      builder.addMethods(dateMethods());
+    }
+    if (latLon != null) {
+      builder.addMethods(latLonMethods(latLon));
+    }
+
+    return builder
+        .addMethod(constructor.build())
+        .addMethod(MethodSpec.methodBuilder("read")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(model)
+            .addParameter(JSON_READER, "in")
+            .addException(IO_EXCEPTION)
+            .beginControlFlow("if (in.peek() == $T.NULL)", JSON_TOKEN)
+            .addStatement("in.nextNull()")
+            .addStatement("return null")
+            .endControlFlow()
+            .addStatement("$T result = new $T()", model, model)
+            .addStatement("in.beginObject()")
+            .beginControlFlow("while (in.hasNext())")
+            .beginControlFlow("if (in.nextName().equals(\"fields\"))")
+            .addStatement("readFields(in, result)")
+            .nextControlFlow("else")
+            .addStatement("in.skipValue()")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("in.endObject()")
+            .addStatement("return result")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("readFields")
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(JSON_READER, "in")
+            .addParameter(model, "result")
+            .addException(IO_EXCEPTION)
+            .addStatement("in.beginObject()")
+            .beginControlFlow("while (in.hasNext())")
+            .addStatement("String name = in.nextName()")
+            .beginControlFlow("if (in.peek() == $T.NULL)", JSON_TOKEN)
+            .addStatement("in.nextNull()")
+            .addStatement("continue")
+            .endControlFlow()
+            .beginControlFlow("switch (name)")
+            .addCode(read.build())
+            .addCode("default:\n$>")
+            .addStatement("in.skipValue()")
+            .addCode("$<")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("in.endObject()")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("write")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(JSON_WRITER, "out")
+            .addParameter(model, "value")
+            .addException(IO_EXCEPTION)
+            .beginControlFlow("if (value == null)")
+            .addStatement("out.nullValue()")
+            .addStatement("return")
+            .endControlFlow()
+            .addStatement("out.beginObject().name(\"fields\").beginObject()")
+            .addCode(write.build())
+            .addStatement("out.endObject().endObject()")
+            .build())
+        .build();
+  }
+
+  /**
+   * {@code FACTORY} constant to register the adapter with a {@code GsonBuilder}, which also makes
+   * it available to the adapters of models linking to this one.
+   */
+  static FieldSpec factoryField(ClassName model, ClassName adapter) {
+    return FieldSpec.builder(TYPE_ADAPTER_FACTORY, "FACTORY",
+        Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .initializer("$L", factory(model, adapter, "gson"))
+        .build();
+  }
+
+  /**
+   * {@code factory(LinkResolver)} method replacing the {@code FACTORY} constant with lazy links,
+   * the resolver is handed to every link the adapter reads.
+   */
+  static MethodSpec factoryMethod(ClassName model, ClassName adapter, ClassName resolver) {
+    return MethodSpec.methodBuilder("factory")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .returns(TYPE_ADAPTER_FACTORY)
+        .addParameter(resolver, "resolver", Modifier.FINAL)
+        .addStatement("return $L", factory(model, adapter, "gson, resolver"))
+        .build();
+  }
+
+  static TypeSpec factory(ClassName model, ClassName adapter, String arguments) {
+    TypeVariableName t = TypeVariableName.get("T");
+    TypeName adapterOfT = ParameterizedTypeName.get(TYPE_ADAPTER, t);
+    return TypeSpec.anonymousClassBuilder("")
+        .addSuperinterface(TYPE_ADAPTER_FACTORY)
+        .addMethod(MethodSpec.methodBuilder("create")
+            .addAnnotation(Override.class)
+            .addAnnotation(UNCHECKED)
+            .addModifiers(Modifier.PUBLIC)
+            .addTypeVariable(t)
+            .returns(adapterOfT)
+            .addParameter(GSON, "gson")
+            .addParameter(ParameterizedTypeName.get(TYPE_TOKEN, t), "type")
+            .addStatement("return type.getRawType() == $T.class ? ($T) new $T($L) : null",
+                model, adapterOfT, adapter, arguments)
+            .build())
+        .build();
+  }
+
+  /**
+   * Reading and writing lazy links, {@code {"sys": {"type": "Link", "linkType": "Entry",
+   * "id": "..."}}}. Only the id of a link is kept, anything else is skipped.
+   */
+  static List<MethodSpec> linkMethods() {
+    TypeName listOfStrings = ParameterizedTypeName.get(List.class, String.class);
+    return Arrays.asList(
+        MethodSpec.methodBuilder("readLinkId")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(String.class)
+            .addParameter(JSON_READER, "in")
+            .addException(IO_EXCEPTION)
+            .beginControlFlow("if (in.peek() == $T.NULL)", JSON_TOKEN)
+            .addStatement("in.nextNull()")
+            .addStatement("return null")
+            .endControlFlow()
+            .addStatement("String id = null")
+            .addStatement("in.beginObject()")
+            .beginControlFlow("while (in.hasNext())")
+            .beginControlFlow("if (in.nextName().equals(\"sys\"))")
+            .addStatement("in.beginObject()")
+            .beginControlFlow("while (in.hasNext())")
+            .beginControlFlow("if (in.nextName().equals(\"id\"))")
+            .addStatement("id = in.nextString()")
+            .nextControlFlow("else")
+            .addStatement("in.skipValue()")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("in.endObject()")
+            .nextControlFlow("else")
+            .addStatement("in.skipValue()")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("in.endObject()")
+            .addStatement("return id")
+            .build(),
+        MethodSpec.methodBuilder("readLinkIds")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(listOfStrings)
+            .addParameter(JSON_READER, "in")
+            .addException(IO_EXCEPTION)
+            .addStatement("$T ids = new $T()", listOfStrings,
+                ParameterizedTypeName.get(ArrayList.class, String.class))
+            .addStatement("in.beginArray()")
+            .beginControlFlow("while (in.hasNext())")
+            .addStatement("ids.add(readLinkId(in))")
+            .endControlFlow()
+            .addStatement("in.endArray()")
+            .addStatement("return ids")
+            .build(),
+        MethodSpec.methodBuilder("writeLink")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(JSON_WRITER, "out")
+            .addParameter(String.class, "linkType")
+            .addParameter(String.class, "id")
+            .addException(IO_EXCEPTION)
+            .beginControlFlow("if (id == null)")
+            .addStatement("out.nullValue()")
+            .addStatement("return")
+            .endControlFlow()
+            .addStatement("out.beginObject().name(\"sys\").beginObject()")
+            .addStatement("out.name(\"type\").value(\"Link\")")
+            .addStatement("out.name(\"linkType\").value(linkType)")
+            .addStatement("out.name(\"id\").value(id)")
+            .addStatement("out.endObject().endObject()")
+            .build(),
+        MethodSpec.methodBuilder("writeLinks")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(JSON_WRITER, "out")
+            .addParameter(String.class, "linkType")
+            .addParameter(listOfStrings, "ids")
+            .addException(IO_EXCEPTION)
+            .beginControlFlow("if (ids == null)")
+            .addStatement("out.nullValue()")
+            .addStatement("return")
+            .endControlFlow()
+            .addStatement("out.beginArray()")
+            .beginControlFlow("for (String id : ids)")
+            .addStatement("writeLink(out, linkType, id)")
+            .endControlFlow()
+            .addStatement("out.endArray()")
+            .build());
+  }
+
+  /**
+   * Conversion of typed date fields from and to ISO 8601 strings, as used by Contentful. Dates
+   * are stored as a date only, or with a time of minutes, seconds or fractions of a second, and
+   * an optional zone offset. Values without a zone are read as UTC. Dates are written in UTC
+   * with milliseconds.
+   */
+  static List<MethodSpec> dateMethods() {
+    return Arrays.asList(
+        MethodSpec.methodBuilder("parseDate")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(long.class)
+            .addParameter(String.class, "value")
+            .addStatement("int length = value.length()")
+            .beginControlFlow("if (length < 10 || value.charAt(4) != '-' "
+                + "|| value.charAt(7) != '-')")
+            .addStatement("throw new $T($S + value)", JSON_SYNTAX_EXCEPTION, "Invalid date: ")
+            .endControlFlow()
+            .addStatement("int year = parseDigits(value, 0, 4)")
+            .addStatement("int month = parseDigits(value, 5, 7)")
+            .addStatement("int day = parseDigits(value, 8, 10)")
+            .addStatement("long millis = 0")
+            .addStatement("int i = 10")
+            .beginControlFlow("if (i < length)")
+            .beginControlFlow("if (length < 16 || value.charAt(10) != 'T' "
+                + "|| value.charAt(13) != ':')")
+            .addStatement("throw new $T($S + value)", JSON_SYNTAX_EXCEPTION, "Invalid date: ")
+            .endControlFlow()
+            .addStatement("millis = parseDigits(value, 11, 13) * 3600000L "
+                + "+ parseDigits(value, 14, 16) * 60000L")
+            .addStatement("i = 16")
+            .beginControlFlow("if (i < length && value.charAt(i) == ':')")
+            .addStatement("millis += parseDigits(value, i + 1, i + 3) * 1000L")
+            .addStatement("i += 3")
+            .beginControlFlow("if (i < length && value.charAt(i) == '.')")
+            .addStatement("int start = ++i")
+            .beginControlFlow("while (i < length && value.charAt(i) >= '0' "
+                + "&& value.charAt(i) <= '9')")
+            .addStatement("i++")
+            .endControlFlow()
+            .addComment("Only milliseconds are kept, digits beyond are dropped")
+            .addStatement("int end = Math.min(i, start + 3)")
+            .addStatement("int fraction = parseDigits(value, start, end)")
+            .beginControlFlow("for (int digits = end - start; digits < 3; digits++)")
+            .addStatement("fraction *= 10")
+            .endControlFlow()
+            .addStatement("millis += fraction")
+            .endControlFlow()
+            .endControlFlow()
+            .beginControlFlow("if (i < length && value.charAt(i) == 'Z')")
+            .addStatement("i++")
+            .nextControlFlow("else if (i < length && (value.charAt(i) == '+' "
+                + "|| value.charAt(i) == '-'))")
+            .addStatement("int sign = value.charAt(i) == '+' ? 1 : -1")
+            .addStatement("long offset = parseDigits(value, i + 1, i + 3) * 3600000L")
+            .addStatement("i += 3")
+            .beginControlFlow("if (i < length)")
+            .addStatement("i += value.charAt(i) == ':' ? 1 : 0")
+            .addStatement("offset += parseDigits(value, i, i + 2) * 60000L")
+            .addStatement("i += 2")
+            .endControlFlow()
+            .addStatement("millis -= sign * offset")
+            .endControlFlow()
+            .endControlFlow()
+            .beginControlFlow("if (i != length || month < 1 || month > 12 || day < 1 || day > 31)")
+            .addStatement("throw new $T($S + value)", JSON_SYNTAX_EXCEPTION, "Invalid date: ")
+            .endControlFlow()
+            .addComment("Days since the epoch of the proleptic Gregorian calendar")
+            .addStatement("int y = month <= 2 ? year - 1 : year")
+            .addStatement("int era = (y >= 0 ? y : y - 399) / 400")
+            .addStatement("int yearOfEra = y - era * 400")
+            .addStatement("int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 "
+                + "+ day - 1")
+            .addStatement("long days = era * 146097L + yearOfEra * 365 + yearOfEra / 4 "
+                + "- yearOfEra / 100 + dayOfYear")
+            .addStatement("return (days - 719468) * 86400000L + millis")
+            .build(),
+        MethodSpec.methodBuilder("parseDigits")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(int.class)
+            .addParameter(String.class, "value")
+            .addParameter(int.class, "start")
+            .addParameter(int.class, "end")
+            .beginControlFlow("if (start >= end || end > value.length())")
+            .addStatement("throw new $T($S + value)", JSON_SYNTAX_EXCEPTION, "Invalid date: ")
+            .endControlFlow()
+            .addStatement("int result = 0")
+            .beginControlFlow("for (int i = start; i < end; i++)")
+            .addStatement("char c = value.charAt(i)")
+            .beginControlFlow("if (c < '0' || c > '9')")
+            .addStatement("throw new $T($S + value)", JSON_SYNTAX_EXCEPTION, "Invalid date: ")
+            .endControlFlow()
+            .addStatement("result = result * 10 + c - '0'")
+            .endControlFlow()
+            .addStatement("return result")
+            .build(),
+        MethodSpec.methodBuilder("formatDate")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(String.class)
+            .addParameter(Long.class, "value")
+            .beginControlFlow("if (value == null)")
+            .addStatement("return null")
+            .endControlFlow()
+            .addStatement("$T format = new $T($S, $T.US)", SimpleDateFormat.class,
+                SimpleDateFormat.class, "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.class)
+            .addStatement("format.setTimeZone($T.getTimeZone($S))", TimeZone.class, "UTC")
+            .addStatement("return format.format(new $T(value))", Date.class)
+            .build());
+  }
+
+  /**
+   * Reading and writing typed location fields, {@code {"lat": 52.5, "lon": 13.4}}.
+   */
+  static List<MethodSpec> latLonMethods(TypeName latLon) {
+    return Arrays.asList(
+        MethodSpec.methodBuilder("readLatLon")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(latLon)
+            .addParameter(JSON_READER, "in")
+            .addException(IO_EXCEPTION)
+            .addStatement("double lat = 0")
+            .addStatement("double lon = 0")
+            .addStatement("in.beginObject()")
+            .beginControlFlow("while (in.hasNext())")
+            .addStatement("String name = in.nextName()")
+            .beginControlFlow("if (name.equals(\"lat\"))")
+            .addStatement("lat = in.nextDouble()")
+            .nextControlFlow("else if (name.equals(\"lon\"))")
+            .addStatement("lon = in.nextDouble()")
+            .nextControlFlow("else")
+            .addStatement("in.skipValue()")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("in.endObject()")
+            .addStatement("return new $T(lat, lon)", latLon)
+            .build(),
+        MethodSpec.methodBuilder("writeLatLon")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(JSON_WRITER, "out")
+            .addParameter(latLon, "value")
+            .addException(IO_EXCEPTION)
+            .beginControlFlow("if (value == null)")
+            .addStatement("out.nullValue()")
+            .addStatement("return")
+            .endControlFlow()
+            .addStatement("out.beginObject().name(\"lat\").value(value.lat())"
+                + ".name(\"lon\").value(value.lon()).endObject()")
+            .build());
+  }
+
+  /**
+   * @return name of the {@code JsonReader} method reading a value of the given kind, or null if
+   * it is read with an adapter
+   */
+  static String reader(Schema.Kind kind) {
+    switch (kind) {
+      case SYMBOL:
+      case TEXT:
+      case DATE:
+        return "nextString";
+      case INTEGER:
+        return "nextInt";
+      case NUMBER:
+        return "nextDouble";
+      case BOOLEAN:
+        return "nextBoolean";
+      default:
+        return null;
+    }
+  }
+}
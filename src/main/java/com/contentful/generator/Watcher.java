@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.model.CMAContentType;
+import com.contentful.java.cma.model.CMASystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps generated models up to date by polling a source for changed content types.
+ * <p>
+ * Changes are detected using the version and update time of every content type. When anything
+ * changed, the generator runs in incremental mode, so only models of changed content types (and
+ * of content types linking to renamed ones) are rewritten.
+ */
+public class Watcher {
+  final Generator generator;
+  final String pkg;
+  final String path;
+  final ContentTypeSource source;
+  final long intervalMillis;
+  Map<String, String> versions;
+
+  /**
+   * @param generator      generator whose configuration is used for regenerating
+   * @param pkg            package name for generated classes
+   * @param path           package source root
+   * @param source         content types to watch
+   * @param intervalMillis time between two polls
+   */
+  public Watcher(Generator generator, String pkg, String path, ContentTypeSource source,
+                 long intervalMillis) {
+    this.generator = generator.copy(generator.printer);
+    this.generator.incremental = true;
+    this.pkg = pkg;
+    this.path = path;
+    this.source = source;
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Poll until the current thread is interrupted. Failures are reported and retried with the
+   * next poll.
+   */
+  public void run() {
+    generator.printer.print("Watching for content type changes every "
+        + intervalMillis + "ms.");
+
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        poll();
+      } catch (Exception e) {
+        generator.printer.print("Failed to update models, reason: " + e.toString());
+      }
+
+      try {
+        Thread.sleep(intervalMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Read all content types and regenerate models if any of them changed since the last poll.
+   *
+   * @return whether models were regenerated
+   */
+  boolean poll() throws Exception {
+    final List<CMAContentType> contentTypes = new ArrayList<CMAContentType>();
+    source.read(new ContentTypeSource.PageConsumer() {
+      @Override public void onPage(List<CMAContentType> page) {
+        contentTypes.addAll(page);
+      }
+    });
+
+    Map<String, String> current = versions(contentTypes);
+    if (current.equals(versions)) {
+      return false;
+    }
+
+    if (versions != null) {
+      generator.printer.print("Content types changed, updating models.");
+    }
+    generator.generate(pkg, path, new ContentTypeSource() {
+      @Override public void read(PageConsumer consumer) throws Exception {
+        consumer.onPage(contentTypes);
+      }
+    });
+
+    versions = current;
+    return true;
+  }
+
+  static Map<String, String> versions(List<CMAContentType> contentTypes) {
+    Map<String, String> result = new HashMap<String, String>();
+    for (CMAContentType contentType : contentTypes) {
+      CMASystem system = contentType.getSystem();
+      result.put(contentType.getId(), system == null
+          ? null : system.getVersion() + "@" + system.getUpdatedAt());
+    }
+    return Collections.unmodifiableMap(result);
+  }
+}
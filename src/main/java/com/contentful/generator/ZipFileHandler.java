@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.google.common.base.Charsets;
+import com.squareup.javapoet.JavaFile;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Collects generated sources into a single source jar or zip archive, instead of creating a file
+ * per model.
+ * <p>
+ * Sources are kept in memory until {@link #close()}. They are then written sorted by path, so
+ * unchanged sources produce an identical archive whatever order models were generated in. The
+ * archive is written to a temporary file next to it, which then replaces the archive. Deleting
+ * any entry (as done when generation fails) discards the whole archive on close, leaving a
+ * previously existing archive untouched.
+ */
+public class ZipFileHandler implements Generator.FileHandler, Closeable {
+  // Fixed entry timestamp, so that unchanged sources produce an identical archive
+  static final long ENTRY_TIME = 315532800000L;
+
+  final File archive;
+  final Map<String, byte[]> entries = new TreeMap<String, byte[]>();
+  final Map<File, String> paths = new HashMap<File, String>();
+  boolean discarded;
+  boolean closed;
+
+  /**
+   * @param archive archive to create
+   */
+  public ZipFileHandler(File archive) throws IOException {
+    this.archive = archive.getAbsoluteFile();
+    Files.createDirectories(this.archive.getParentFile().toPath());
+  }
+
+  @Override public synchronized void write(JavaFile javaFile, String path) throws IOException {
+    StringBuilder source = new StringBuilder();
+    javaFile.writeTo(source);
+
+    String relativePath = InMemoryFileHandler.relativePath(javaFile);
+    entries.put(relativePath, source.toString().getBytes(Charsets.UTF_8));
+
+    paths.put(Generator.sourceFile(path, javaFile.packageName, javaFile.typeSpec.name),
+        relativePath);
+  }
+
+  @Override public synchronized boolean delete(File file) {
+    if (paths.remove(file) == null) {
+      return false;
+    }
+    discarded = true;
+    return true;
+  }
+
+  /**
+   * Write the archive and move it into place, unless entries were deleted.
+   */
+  @Override public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (discarded) {
+      return;
+    }
+
+    File temp = File.createTempFile(archive.getName(), ".tmp", archive.getParentFile());
+    try {
+      ZipOutputStream output =
+          new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      try {
+        for (Map.Entry<String, byte[]> source : entries.entrySet()) {
+          ZipEntry entry = new ZipEntry(source.getKey());
+          entry.setTime(ENTRY_TIME);
+          output.putNextEntry(entry);
+          output.write(source.getValue());
+          output.closeEntry();
+        }
+      } finally {
+        output.close();
+      }
+      Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      temp.delete();
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.squareup.javapoet.JavaFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class BatchTests extends BaseTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void testGeneratesAllTargets() throws Exception {
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+
+    Batch batch = Batch.load(config("{\"token\": \"secret\", \"targets\": ["
+        + "{\"space\": \"a\", \"package\": \"test.a\", \"folder\": \"out\"},"
+        + "{\"space\": \"b\", \"environment\": \"staging\", \"package\": \"test.b\","
+        + "\"folder\": \"out\", \"token\": \"other\"}]}"), null);
+    List<Batch.Result> results = generate(batch, fileHandler, printer, 2);
+
+    assertThat(results).hasSize(2);
+    assertThat(results.get(0).error).isNull();
+    assertThat(results.get(1).error).isNull();
+    assertThat(results.get(1).target.environment).isEqualTo("staging");
+    Mockito.verify(fileHandler, Mockito.times(2)).write(Mockito.any(JavaFile.class), eq("out"));
+    Mockito.verify(printer).print("[a/master -> test.a] "
+        + "Generated 1 models, skipped 0 unchanged, deleted 0.");
+    Mockito.verify(printer).print("Generated 2 targets, 0 failed.");
+
+    assertThat(server.takeRequest().getHeader("Authorization")).isNotNull();
+  }
+
+  @Test public void testContinuesAfterFailingTarget() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404));
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+
+    Batch batch = Batch.load(config("{\"targets\": ["
+        + "{\"space\": \"a\", \"package\": \"test.a\", \"folder\": \"out\"},"
+        + "{\"space\": \"b\", \"package\": \"test.b\", \"folder\": \"out\"}]}"), "secret");
+    List<Batch.Result> results = generate(batch, fileHandler, printer, 1);
+
+    assertThat(results.get(0).error).isInstanceOf(GeneratorException.class);
+    assertThat(results.get(1).error).isNull();
+    Mockito.verify(printer).print("Generated 1 targets, 1 failed.");
+  }
+
+  @Test(expected = GeneratorException.class)
+  public void testTargetWithoutTokenThrows() throws Exception {
+    Batch.load(config("{\"targets\": ["
+        + "{\"space\": \"a\", \"package\": \"test.a\", \"folder\": \"out\"}]}"), null);
+  }
+
+  List<Batch.Result> generate(Batch batch, Generator.FileHandler fileHandler,
+                              Generator.Printer printer, int threads) {
+    ClientFactory clients = new ClientFactory().setCoreEndpoint(server.url("/").toString());
+    try {
+      return batch.generate(new Generator(fileHandler, printer), clients, threads);
+    } finally {
+      clients.close();
+    }
+  }
+
+  File config(String json) throws Exception {
+    File file = temporaryFolder.newFile();
+    Files.asCharSink(file, Charsets.UTF_8).write(json);
+    return file;
+  }
+}
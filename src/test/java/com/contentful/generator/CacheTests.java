@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.squareup.javapoet.JavaFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+
+public class CacheTests extends BaseTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void testRevalidatesCachedContentTypes() throws Exception {
+    server.enqueue(newSuccessResponse("all_content_types.json").setHeader("ETag", "\"v1\""));
+    server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+
+    String path = temporaryFolder.newFolder("src").getAbsolutePath();
+    Generator.FileHandler fileHandler = Mockito.spy(new Generator.DefaultFileHandler());
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+    Generator generator = new Generator(fileHandler, printer).setIncremental(true);
+    Stats stats = new Stats();
+
+    ClientFactory clients = new ClientFactory()
+        .setCoreEndpoint(server.url("/").toString())
+        .setCacheDirectory(temporaryFolder.newFolder("cache"))
+        .setListener(stats);
+    try {
+      generator.generate("test", path, clients.create("nospace", "noenv", "secret"));
+      generator.generate("test", path, clients.create("nospace", "noenv", "secret"));
+    } finally {
+      clients.close();
+    }
+
+    RecordedRequest first = server.takeRequest();
+    assertThat(first.getHeader("If-None-Match")).isNull();
+    RecordedRequest second = server.takeRequest();
+    assertThat(second.getHeader("If-None-Match")).isEqualTo("\"v1\"");
+    // The call factory extends the one of the SDK, which authenticates the requests
+    assertThat(first.getHeader("Authorization")).isEqualTo("Bearer secret");
+    assertThat(second.getHeader("Authorization")).isEqualTo("Bearer secret");
+
+    Mockito.verify(printer).print("Generated 1 models, skipped 0 unchanged, deleted 0.");
+    Mockito.verify(printer).print("Nothing to do, 1 models are up to date.");
+    Mockito.verify(fileHandler, Mockito.times(1)).write(Mockito.any(JavaFile.class), anyString());
+    assertThat(new File(path, "test/Model.java").isFile()).isTrue();
+    assertThat(stats.requests).isEqualTo(2);
+    assertThat(stats.notModifiedRequests).isEqualTo(1);
+  }
+}
@@ -20,17 +20,37 @@ import com.contentful.generator.lib.TestUtils;
 import com.contentful.java.cma.Constants.CMAFieldType;
 import com.contentful.java.cma.model.CMAContentType;
 import com.contentful.java.cma.model.CMAField;
+import com.google.common.base.CaseFormat;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import okhttp3.HttpUrl;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
@@ -38,6 +58,8 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.startsWith;
 
 public class GeneratorTests extends BaseTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test public void testBaseFields() throws Exception {
     generateAndAssert("base_fields.json", "BaseFields");
   }
@@ -68,7 +90,7 @@ public class GeneratorTests extends BaseTest {
       CMAField field =
           new CMAField().setId("fid").setType(CMAFieldType.Link).setLinkType("Entry");
 
-      new Generator().createFieldSpec(field, "test", "name", "ctid");
+      new Generator().createFieldSpec(new Run("test", "unused"), field, "name", "ctid");
     } catch (GeneratorException e) {
       assertEquals("Field \"fid\" for content type \"ctid\" is missing link validation, "
           + "must have content type validation.", e.getMessage());
@@ -86,7 +108,7 @@ public class GeneratorTests extends BaseTest {
         put("linkType", "Entry");
       }});
 
-      new Generator().createFieldSpec(field, "test", "name", "ctid");
+      new Generator().createFieldSpec(new Run("test", "unused"), field, "name", "ctid");
     } catch (GeneratorException e) {
       assertEquals("Field \"fid\" for content type \"ctid\" is missing link validation, "
           + "must have content type validation.", e.getMessage());
@@ -120,16 +142,66 @@ public class GeneratorTests extends BaseTest {
     assertThat(result).isNull();
   }
 
+  @Test public void testNormalize() throws Exception {
+    String[] names = {
+        "field", "Field", "fieldName", "FieldName", "field name", "field-name", "field_name",
+        "-field", "1field", "f", "F", "URLField", "fieldURL", "\u00e4rger", "\u00c4rger",
+        "feld-\u00e4-\u00fc", "\u212Aelvin", "\u0130stanbul", "\u00fcber Field", "a.b.c", "__", "  "
+    };
+
+    for (String name : names) {
+      for (CaseFormat format : CaseFormat.values()) {
+        assertThat(Generator.normalize(name, format)).isEqualTo(legacyNormalize(name, format));
+      }
+    }
+    assertThat(Generator.normalize("my Field-Id", CaseFormat.UPPER_CAMEL))
+        .isEqualTo("MyFieldId");
+  }
+
+  @Test public void testNormalizeIgnoresDefaultLocale() throws Exception {
+    // Turkish and Lithuanian lower case some letters differently, e.g. I and \u00cc
+    List<String> names = Arrays.asList("Istanbul", "\u0130stanbul", "ISIK", "\u00ccla", "\u00cdla");
+    Locale defaultLocale = Locale.getDefault();
+    try {
+      for (Locale locale : Arrays.asList(new Locale("tr", "TR"), new Locale("lt", "LT"))) {
+        Locale.setDefault(locale);
+        for (String name : names) {
+          for (CaseFormat format : CaseFormat.values()) {
+            assertThat(Generator.normalizeUncached(name, format))
+                .isEqualTo(legacyNormalize(name, format));
+          }
+        }
+      }
+    } finally {
+      Locale.setDefault(defaultLocale);
+    }
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testCreateLinkFieldSpecWithInvalidTypeThrows() throws Exception {
     try {
-      new Generator().createLinkFieldSpec("invalid", null, "test", "test", "fieldId", "ctid");
+      new Generator().createLinkFieldSpec(new Run("test", "unused"), "invalid", null, "test",
+          "fieldId", "ctid");
     } catch (IllegalArgumentException e) {
       assertThat(e.getMessage()).isEqualTo("Failed to create FieldSpec for \"test\"");
       throw e;
     }
   }
 
+  @Test public void testSchema() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    CMAContentType contentType = client.contentTypes().fetchAll().getItems().get(0);
+    contentType.getFields().add(new CMAField().setId("hidden").setType(CMAFieldType.Symbol)
+        .setDisabled(true));
+
+    Schema schema = Schema.of(contentType);
+    assertThat(schema.id).isEqualTo("post");
+    assertThat(schema.className).isEqualTo("Post");
+    assertThat(schema.fields).hasLength(2);
+    assertThat(schema.fields[1].kind).isEqualTo(Schema.Kind.ENTRY);
+    assertThat(schema.fields[1].target).isSameAs(Schema.IDS.intern(new String("author")));
+  }
+
   @Test public void testGenerate() throws Exception {
     server.enqueue(newSuccessResponse("all_content_types.json"));
     Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
@@ -150,6 +222,253 @@ public class GeneratorTests extends BaseTest {
     Mockito.verify(printer).print("WARNING: Ignoring Content Type (id=\"ctid\"), has no name.");
   }
 
+  @Test public void testGeneratePaged() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+    new Generator(fileHandler, null).setPageSize(1).generate("test", ".", client);
+
+    ArgumentCaptor<JavaFile> captor = ArgumentCaptor.forClass(JavaFile.class);
+    Mockito.verify(fileHandler, Mockito.times(2)).write(captor.capture(), anyString());
+    assertThat(captor.getAllValues().get(0).typeSpec.name).isEqualTo("Post");
+    assertThat(captor.getAllValues().get(0).toString()).contains("Author author;");
+    assertThat(captor.getAllValues().get(1).typeSpec.name).isEqualTo("Author");
+
+    assertThat(server.getRequestCount()).isEqualTo(2);
+    // Paged through the query of fetchAll, until the total reported by the first page
+    for (String skip : Arrays.asList("0", "1")) {
+      HttpUrl url = server.takeRequest().getRequestUrl();
+      assertThat(url.queryParameter("skip")).isEqualTo(skip);
+      assertThat(url.queryParameter("limit")).isEqualTo("1");
+    }
+  }
+
+  @Test public void testGeneratePagedWithCappedLimit() throws Exception {
+    // The server returns fewer content types per page than requested
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+    new Generator(fileHandler, null).setPageSize(10).generate("test", ".", client);
+
+    Mockito.verify(fileHandler, Mockito.times(2)).write(Mockito.any(JavaFile.class), anyString());
+    assertThat(server.getRequestCount()).isEqualTo(2);
+    assertThat(server.takeRequest().getPath()).contains("limit=10");
+    assertThat(server.takeRequest().getPath()).contains("skip=1");
+  }
+
+  @Test public void testGenerateParallel() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+    new Generator(fileHandler, null).setPageSize(1).setThreads(4).generate("test", ".", client);
+
+    Mockito.verify(fileHandler, Mockito.times(2)).write(Mockito.any(JavaFile.class), anyString());
+    Mockito.verify(fileHandler, Mockito.times(0)).delete(Mockito.any(File.class));
+  }
+
+  @Test public void testGenerateConcurrentRunsShareGenerator() throws Exception {
+    final List<List<CMAContentType>> pages = new ArrayList<List<CMAContentType>>();
+    for (int i = 0; i < 4; i++) {
+      server.enqueue(newSuccessResponse("paged_content_types_" + (i % 2 + 1) + ".json"));
+      pages.add(client.contentTypes().fetchAll().getItems());
+    }
+    pages.get(3).get(0).setName("Writer");
+
+    final List<String> sources = Collections.synchronizedList(new ArrayList<String>());
+    final Generator generator = new Generator(new Generator.FileHandler() {
+      @Override public void write(JavaFile javaFile, String path) {
+        sources.add(javaFile.packageName + "." + javaFile.toString());
+      }
+
+      @Override public boolean delete(File file) {
+        return false;
+      }
+    }, Mockito.mock(Generator.Printer.class)).setThreads(2);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<?>> runs = new ArrayList<Future<?>>();
+      for (int i = 0; i < 20; i++) {
+        final String pkg = i % 2 == 0 ? "author" : "writer";
+        final List<List<CMAContentType>> source = pages.subList(i % 2 * 2, i % 2 * 2 + 2);
+        runs.add(executor.submit(new Callable<Void>() {
+          @Override public Void call() throws Exception {
+            generator.generate(pkg, ".", new ContentTypeSource() {
+              @Override public void read(PageConsumer consumer) throws Exception {
+                for (List<CMAContentType> page : source) {
+                  consumer.onPage(page);
+                }
+              }
+            });
+            return null;
+          }
+        }));
+      }
+      for (Future<?> run : runs) {
+        run.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(sources).hasSize(40);
+    for (String source : sources) {
+      if (source.startsWith("author.") && source.contains("class Post")) {
+        assertThat(source).contains("Author author;");
+      } else if (source.startsWith("writer.") && source.contains("class Post")) {
+        assertThat(source).contains("Writer author;");
+      }
+    }
+  }
+
+  @Test public void testTypedFields() throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    new Generator(fileHandler, Mockito.mock(Generator.Printer.class))
+        .setTypedFields(true)
+        .generate("test", ".", client);
+
+    String venue = new String(fileHandler.getFiles().get("test/Venue.java"), Charsets.UTF_8);
+    assertThat(venue).contains("LatLon location;");
+    assertThat(venue).contains("int capacity;");
+    assertThat(venue).contains("Double rating;");
+    assertThat(venue).contains("boolean open;");
+    assertThat(venue).contains("Map extra;");
+    assertThat(new String(fileHandler.getFiles().get("test/Post.java"), Charsets.UTF_8))
+        .contains("long publishedAt;");
+    assertThat(fileHandler.getFiles()).containsKey("test/LatLon.java");
+  }
+
+  @Test public void testLazyLinks() throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    new Generator(fileHandler, Mockito.mock(Generator.Printer.class))
+        .setLazyLinks(true)
+        .generate("test", ".", client);
+
+    String post = new String(fileHandler.getFiles().get("test/Post.java"), Charsets.UTF_8);
+    assertThat(post).contains("LazyLink<Author> author;");
+    assertThat(post).contains("LazyList<Tag> tags;");
+    assertThat(post).contains("public Author author() {\n"
+        + "    return author == null ? null : author.get();");
+    assertThat(post).contains("public List<Tag> tags() {");
+    assertThat(new String(fileHandler.getFiles().get("test/Author.java"), Charsets.UTF_8))
+        .contains("LazyLink<Asset> avatar;");
+    assertThat(fileHandler.getFiles()).containsKey("test/LinkResolver.java");
+    assertThat(fileHandler.getFiles()).containsKey("test/LazyLink.java");
+    assertThat(fileHandler.getFiles()).containsKey("test/LazyList.java");
+  }
+
+  @Test public void testGenerateIsIndependentOfOrder() throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    List<CMAContentType> contentTypes = client.contentTypes().fetchAll().getItems();
+
+    for (String singleFile : Arrays.asList(null, "Models")) {
+      Random random = new Random(42);
+      Map<String, byte[]> expected = generateShuffled(contentTypes, random, singleFile);
+      assertThat(expected).hasSize(singleFile == null ? 6 : 1);
+
+      for (int i = 0; i < 10; i++) {
+        Map<String, byte[]> files = generateShuffled(contentTypes, random, singleFile);
+        assertThat(files.keySet()).isEqualTo(expected.keySet());
+        for (Map.Entry<String, byte[]> file : expected.entrySet()) {
+          assertThat(files.get(file.getKey())).isEqualTo(file.getValue());
+        }
+        assertThat(hash(files)).isEqualTo(hash(expected));
+      }
+    }
+  }
+
+  @Test(expected = GeneratorException.class)
+  public void testGenerateSameClassNameThrows() throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    final List<CMAContentType> contentTypes = client.contentTypes().fetchAll().getItems();
+    contentTypes.get(2).setName("post");
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+
+    try {
+      new Generator(Mockito.mock(Generator.FileHandler.class), printer)
+          .generate("test", ".", new ContentTypeSource() {
+            @Override public void read(PageConsumer consumer) throws Exception {
+              consumer.onPage(contentTypes);
+            }
+          });
+    } catch (GeneratorException e) {
+      Mockito.verify(printer).print(startsWith("Failed to fetch content types, reason: "
+          + GeneratorException.class.getName()
+          + ": Content types \"post\" and \"tag\" both map to model \"Post\"."));
+      throw e;
+    }
+  }
+
+  @Test(expected = GeneratorException.class)
+  public void testGenerateParallelCleansUpOnFailure() throws Exception {
+    server.enqueue(newSuccessResponse("all_content_types_invalid_id.json"));
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+      new Generator(fileHandler, null).setExecutor(executor).generate("test", ".", client);
+    } catch (GeneratorException e) {
+      ArgumentCaptor<JavaFile> written = ArgumentCaptor.forClass(JavaFile.class);
+      Mockito.verify(fileHandler, Mockito.atLeast(0)).write(written.capture(), anyString());
+      Mockito.verify(fileHandler, Mockito.times(written.getAllValues().size()))
+          .delete(Mockito.any(File.class));
+      assertThat(executor.isShutdown()).isFalse();
+      throw e;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void testGenerateIncremental() throws Exception {
+    String path = temporaryFolder.getRoot().getAbsolutePath();
+    Generator.FileHandler fileHandler = Mockito.spy(new Generator.DefaultFileHandler());
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+    Generator generator = new Generator(fileHandler, printer).setIncremental(true);
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    generator.generate("test", path, client);
+    Mockito.verify(printer).print("Generated 1 models, skipped 0 unchanged, deleted 0.");
+    assertThat(new File(path, "test/Model.java").isFile()).isTrue();
+    assertThat(new File(path, "test/" + Manifest.FILE_NAME).isFile()).isTrue();
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    generator.generate("test", path, client);
+    Mockito.verify(printer).print("Nothing to do, 1 models are up to date.");
+    Mockito.verify(fileHandler, Mockito.times(1)).write(Mockito.any(JavaFile.class), anyString());
+
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    generator.setPageSize(1).generate("test", path, client);
+    Mockito.verify(printer).print("Generated 2 models, skipped 0 unchanged, deleted 1.");
+    assertThat(new File(path, "test/Model.java").exists()).isFalse();
+    assertThat(new File(path, "test/Post.java").isFile()).isTrue();
+    assertThat(new File(path, "test/Author.java").isFile()).isTrue();
+  }
+
+  @Test public void testDefaultFileHandlerSkipsUnchangedFiles() throws Exception {
+    String path = temporaryFolder.getRoot().getAbsolutePath();
+    Generator.FileHandler fileHandler = new Generator.DefaultFileHandler();
+    JavaFile javaFile = JavaFile.builder("test",
+        TypeSpec.classBuilder("Model").addField(String.class, "text").build()).build();
+
+    fileHandler.write(javaFile, path);
+    File file = new File(path, "test/Model.java");
+    assertThat(file.setLastModified(1000L)).isTrue();
+
+    fileHandler.write(javaFile, path);
+    assertThat(file.lastModified()).isEqualTo(1000L);
+    assertThat(temporaryFolder.getRoot().list()).asList().containsExactly("test");
+    assertThat(new File(path, "test").list()).asList().containsExactly("Model.java");
+
+    JavaFile changed = JavaFile.builder("test",
+        TypeSpec.classBuilder("Model").addField(Integer.class, "text").build()).build();
+    fileHandler.write(changed, path);
+    assertThat(file.lastModified()).isNotEqualTo(1000L);
+    assertThat(TestUtils.readFile(file)).isEqualTo(changed.toString());
+  }
+
   @Test(expected = GeneratorException.class)
   public void testGenerateWrapsNetworkError() throws Exception {
     Generator.Printer printer = Mockito.mock(Generator.Printer.class);
@@ -187,14 +506,99 @@ public class GeneratorTests extends BaseTest {
     }
   }
 
+  @Test public void testGenerateIncludesLinkedContentTypes() throws Exception {
+    assertThat(generateFiltered(Lists.newArrayList("po?t"), null))
+        .containsExactly("Post", "Author");
+    assertThat(generateFiltered(Lists.newArrayList("auth*"), null))
+        .containsExactly("Author");
+  }
+
+  @Test public void testGenerateExcludes() throws Exception {
+    assertThat(generateFiltered(null, Lists.newArrayList("post")))
+        .containsExactly("Author");
+    // Still generated, as post links to it
+    assertThat(generateFiltered(null, Lists.newArrayList("author")))
+        .containsExactly("Post", "Author");
+  }
+
+  @Test public void testGenerateIncludesIgnoresDanglingLinks() throws Exception {
+    server.enqueue(newSuccessResponse("dangling_links.json"));
+
+    // Post links to a content type missing from the space, and to one without a field list
+    assertThat(generateFiltered(Lists.newArrayList("post"), null, 100))
+        .containsExactly("Post", "Draft");
+  }
+
+  List<String> generateFiltered(List<String> includes, List<String> excludes) throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    return generateFiltered(includes, excludes, 1);
+  }
+
+  List<String> generateFiltered(List<String> includes, List<String> excludes, int pageSize)
+      throws Exception {
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+
+    new Generator(fileHandler, Mockito.mock(Generator.Printer.class))
+        .setPageSize(pageSize)
+        .setIncludes(includes)
+        .setExcludes(excludes)
+        .generate("test", ".", client);
+
+    ArgumentCaptor<JavaFile> written = ArgumentCaptor.forClass(JavaFile.class);
+    Mockito.verify(fileHandler, Mockito.atLeast(0)).write(written.capture(), anyString());
+    List<String> result = new ArrayList<String>();
+    for (JavaFile javaFile : written.getAllValues()) {
+      result.add(javaFile.typeSpec.name);
+    }
+    return result;
+  }
+
+  Map<String, byte[]> generateShuffled(List<CMAContentType> contentTypes, Random random,
+                                       String singleFile) {
+    final List<CMAContentType> shuffled = new ArrayList<CMAContentType>(contentTypes);
+    Collections.shuffle(shuffled, random);
+    final int pageSize = 1 + random.nextInt(shuffled.size());
+
+    InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    new Generator(fileHandler, Mockito.mock(Generator.Printer.class))
+        .setThreads(1 + random.nextInt(4))
+        .setSingleFile(singleFile)
+        .generate("test", ".", new ContentTypeSource() {
+          @Override public void read(PageConsumer consumer) throws Exception {
+            for (List<CMAContentType> page : Lists.partition(shuffled, pageSize)) {
+              consumer.onPage(page);
+            }
+          }
+        });
+    return fileHandler.getFiles();
+  }
+
+  static HashCode hash(Map<String, byte[]> files) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Map.Entry<String, byte[]> file : files.entrySet()) {
+      hasher.putString(file.getKey(), Charsets.UTF_8).putByte((byte) 0).putBytes(file.getValue());
+    }
+    return hasher.hash();
+  }
+
+  static String legacyNormalize(String name, CaseFormat format) {
+    String normalized = name.substring(0, 1).toLowerCase(Locale.ENGLISH);
+    if (name.length() > 1) {
+      normalized += name.substring(1);
+    }
+    return CaseFormat.LOWER_CAMEL.to(format, normalized.replaceAll("[^\\w\\d]", ""));
+  }
+
   void generateAndAssert(String responseFileName, String className) throws Exception {
     server.enqueue(newSuccessResponse(responseFileName));
     CMAContentType contentType = client.contentTypes().fetchOne("ctid");
 
-    Generator generator = new Generator();
-    generator.models.put("linked-id", "LinkedResource");
+    Run run = new Run("test", "unused");
+    run.models.put("linked-id", "LinkedResource");
 
-    String generatedSource = generator.generateModel("test", contentType, className).toString();
+    String generatedSource =
+        new Generator().generateModel(run, contentType, className).toString();
     final String expected = TestUtils.readTestResource(className + ".java");
     assertThat(generatedSource).isEqualTo(expected);
   }
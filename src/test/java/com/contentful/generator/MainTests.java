@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class MainTests extends BaseTest {
+  @Test public void testParse() throws Exception {
+    CommandLine line = parse("-s", "space", "-t", "token", "-p", "com.test", "-f", "out",
+        "--typed-fields", "--type-adapters", "--incremental");
+
+    assertThat(line.getOptionValue("space")).isEqualTo("space");
+    assertThat(line.hasOption("typed-fields")).isTrue();
+  }
+
+  @Test public void testRejectsIncrementalWithoutFolder() throws Exception {
+    assertRejected("--incremental can only be used with --folder.",
+        "-p", "com.test", "--source-jar", "models.jar", "--incremental");
+    assertRejected("--incremental can only be used with --folder.",
+        "-p", "com.test", "--compile", "models.jar", "--incremental");
+  }
+
+  @Test public void testRejectsWatchWithoutFolder() throws Exception {
+    assertRejected("--watch can only be used with --folder.",
+        "-p", "com.test", "--source-jar", "models.jar", "--watch");
+    assertRejected("--watch can only be used with --folder.",
+        "-p", "com.test", "--compile", "models.jar", "--watch");
+  }
+
+  @Test public void testRejectsTypedFieldsWithoutTypeAdapters() throws Exception {
+    assertRejected("--typed-fields requires --type-adapters.",
+        "-p", "com.test", "-f", "out", "--typed-fields");
+  }
+
+  @Test public void testRejectsLazyLinksWithoutTypeAdapters() throws Exception {
+    assertRejected("--lazy-links requires --type-adapters.",
+        "-p", "com.test", "-f", "out", "--lazy-links");
+  }
+
+  @Test public void testRejectsInvalidBatchThreads() throws Exception {
+    // Rejected before the configuration is read
+    for (String threads : Arrays.asList("0", "-1", "four")) {
+      try {
+        Main.batch(parse("--batch", "missing.json", "--batch-threads", threads), null);
+        fail();
+      } catch (ParseException expected) {
+        assertThat(expected.getMessage()).isEqualTo(
+            "--batch-threads must be a number of at least 1, was '" + threads + "'.");
+      }
+    }
+  }
+
+  @Test public void testRejectsInvalidNumbers() throws Exception {
+    assertInvalidNumber("page-size", "0", 1);
+    assertInvalidNumber("threads", "many", 1);
+    assertInvalidNumber("retries", "-1", 0);
+    assertInvalidNumber("timeout", "10s", 0);
+    assertInvalidNumber("max-requests", "", 0);
+  }
+
+  @Test public void testPageSizeIsParsedForSourceOnly() throws Exception {
+    CommandLine line = parse("-p", "com.test", "-f", "out", "--page-size", "7", "--threads", "3");
+
+    assertThat(Main.pageSize(line)).isEqualTo(7);
+    Generator generator = Main.createGenerator(line, null, null);
+    // Passed to the content type source, batch targets set it on their generator
+    assertThat(generator.pageSize).isEqualTo(Generator.DEFAULT_PAGE_SIZE);
+    assertThat(generator.threads).isEqualTo(3);
+  }
+
+  static void assertInvalidNumber(String option, String value, int min) throws Exception {
+    CommandLine line = parse("-p", "com.test", "-f", "out", "--" + option, value);
+    try {
+      Main.pageSize(line);
+      Main.createGenerator(line, null, null);
+      Main.createClientFactory(line, null).close();
+      fail();
+    } catch (ParseException expected) {
+      assertThat(expected.getMessage()).isEqualTo(
+          "--" + option + " must be a number of at least " + min + ", was '" + value + "'.");
+    }
+  }
+
+  static CommandLine parse(String... args) throws ParseException {
+    return Main.parse(Main.constructOptions(), args);
+  }
+
+  static void assertRejected(String message, String... args) {
+    try {
+      parse(args);
+      fail();
+    } catch (ParseException expected) {
+      assertThat(expected.getMessage()).isEqualTo(message);
+    }
+  }
+}
@@ -0,0 +1,548 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.generator.lib.TestUtils;
+import com.contentful.java.cma.model.CMAContentType;
+import com.contentful.java.cma.model.CMAField;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapterFactory;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class OutputTests extends BaseTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void testInMemory() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    new Generator(fileHandler).generate("com.test", ".", client);
+
+    assertThat(fileHandler.getFiles().keySet())
+        .containsExactly("com/test/Author.java", "com/test/Post.java");
+    assertThat(new String(fileHandler.getFiles().get("com/test/Post.java"), Charsets.UTF_8))
+        .contains("public class Post extends Resource");
+  }
+
+  @Test public void testInMemoryCleansUpOnFailure() throws Exception {
+    server.enqueue(newSuccessResponse("all_content_types_invalid_id.json"));
+    InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    try {
+      new Generator(fileHandler).generate("test", ".", client);
+      fail();
+    } catch (GeneratorException expected) {
+    }
+
+    assertThat(fileHandler.getFiles()).isEmpty();
+  }
+
+  @Test public void testZip() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    File archive = new File(temporaryFolder.getRoot(), "sources.jar");
+    ZipFileHandler fileHandler = new ZipFileHandler(archive);
+    try {
+      new Generator(fileHandler).setPageSize(1).generate("com.test", ".", client);
+    } finally {
+      fileHandler.close();
+    }
+
+    ZipFile zip = new ZipFile(archive);
+    try {
+      List<String> names = new ArrayList<String>();
+      for (ZipEntry entry : Collections.list(zip.entries())) {
+        names.add(entry.getName());
+      }
+      assertThat(names).containsExactly("com/test/Post.java", "com/test/Author.java");
+
+      String source = new String(
+          ByteStreams.toByteArray(zip.getInputStream(zip.getEntry("com/test/Author.java"))),
+          Charsets.UTF_8);
+      assertThat(source).contains("public class Author extends Resource");
+    } finally {
+      zip.close();
+    }
+    assertThat(temporaryFolder.getRoot().list()).asList().containsExactly("sources.jar");
+  }
+
+  @Test public void testZipDiscardedOnFailure() throws Exception {
+    server.enqueue(newSuccessResponse("all_content_types_invalid_id.json"));
+    File archive = new File(temporaryFolder.getRoot(), "sources.jar");
+    ZipFileHandler fileHandler = new ZipFileHandler(archive);
+    try {
+      new Generator(fileHandler).generate("test", ".", client);
+      fail();
+    } catch (GeneratorException expected) {
+    } finally {
+      fileHandler.close();
+    }
+
+    assertThat(temporaryFolder.getRoot().list()).isEmpty();
+  }
+
+  @Test public void testZipIndependentOfWriteOrder() throws Exception {
+    List<JavaFile> javaFiles = new ArrayList<JavaFile>();
+    for (String name : Arrays.asList("Post", "Author", "Tag")) {
+      javaFiles.add(JavaFile.builder("com.test", TypeSpec.classBuilder(name).build()).build());
+    }
+
+    File first = new File(temporaryFolder.getRoot(), "first.jar");
+    ZipFileHandler fileHandler = new ZipFileHandler(first);
+    for (JavaFile javaFile : javaFiles) {
+      fileHandler.write(javaFile, ".");
+    }
+    fileHandler.close();
+
+    Collections.reverse(javaFiles);
+    File second = new File(temporaryFolder.getRoot(), "second.jar");
+    fileHandler = new ZipFileHandler(second);
+    for (JavaFile javaFile : javaFiles) {
+      fileHandler.write(javaFile, ".");
+    }
+    fileHandler.close();
+
+    assertThat(Files.toByteArray(second)).isEqualTo(Files.toByteArray(first));
+  }
+
+  @Test public void testCompile() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    CompilingFileHandler fileHandler = new CompilingFileHandler();
+    new Generator(fileHandler).setPageSize(1).generate("com.test", ".", client);
+
+    assertThat(fileHandler.compile().keySet())
+        .containsExactly("com/test/Author.class", "com/test/Post.class");
+  }
+
+  @Test public void testCompileToJar() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    CompilingFileHandler fileHandler = new CompilingFileHandler();
+    new Generator(fileHandler).setPageSize(1).generate("com.test", ".", client);
+
+    File archive = new File(temporaryFolder.getRoot(), "models.jar");
+    fileHandler.compileTo(archive);
+
+    ZipFile zip = new ZipFile(archive);
+    try {
+      assertThat(zip.getEntry("com/test/Post.class")).isNotNull();
+    } finally {
+      zip.close();
+    }
+  }
+
+  @Test public void testCompileFailure() throws Exception {
+    CompilingFileHandler fileHandler = new CompilingFileHandler();
+    fileHandler.write(JavaFile.builder("com.test",
+        TypeSpec.classBuilder("Broken")
+            .addField(ClassName.get("com.test", "Missing"), "missing")
+            .build()).build(), ".");
+
+    try {
+      fileHandler.compile();
+      fail();
+    } catch (GeneratorException e) {
+      assertThat(e.getMessage()).contains("Broken.java");
+    }
+  }
+
+  @Test public void testSingleFile() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    new Generator(fileHandler).setPageSize(1).setSingleFile("Models")
+        .generate("com.test", ".", client);
+
+    assertThat(fileHandler.getFiles().keySet()).containsExactly("com/test/Models.java");
+    String source = new String(fileHandler.getFiles().get("com/test/Models.java"),
+        Charsets.UTF_8);
+    assertThat(source).contains("public final class Models");
+    assertThat(source).contains("public static class Post extends Resource");
+    assertThat(source).contains("public static class Author extends Resource");
+    assertThat(source).contains("Author author;");
+  }
+
+  @Test public void testSingleFileCompiles() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    CompilingFileHandler fileHandler = new CompilingFileHandler();
+    new Generator(fileHandler).setPageSize(1).setSingleFile("Models")
+        .generate("com.test", ".", client);
+
+    assertThat(fileHandler.compile().keySet()).containsExactly("com/test/Models.class",
+        "com/test/Models$Author.class", "com/test/Models$Post.class");
+  }
+
+  @Test public void testTypeAdapters() throws Exception {
+    ClassLoader classLoader = compileWithoutAssets(new Generator(new CompilingFileHandler()));
+    Gson gson = gson(classLoader, null);
+
+    Class<?> postClass = classLoader.loadClass("com.test.Post");
+    Object post = gson.fromJson(TestUtils.readTestResource("post_entry.json"), postClass);
+    assertThat(get(post, "title")).isEqualTo("Hello");
+    assertThat(get(post, "body")).isNull();
+    assertThat(get(post, "publishedAt")).isEqualTo("2017-06-01T10:00:00.000Z");
+    assertThat(get(get(post, "author"), "name")).isEqualTo("Jane");
+    List<?> tags = (List<?>) get(post, "tags");
+    assertThat(tags).hasSize(2);
+    assertThat(get(tags.get(0), "label")).isEqualTo("News");
+    assertThat(get(get(tags.get(0), "category"), "title")).isEqualTo("General");
+    assertThat(get(tags.get(1), "category")).isNull();
+
+    String json = gson.toJson(post);
+    assertThat(gson.toJson(gson.fromJson(json, postClass))).isEqualTo(json);
+  }
+
+  @Test public void testTypedFieldsTypeAdapters() throws Exception {
+    ClassLoader classLoader =
+        compileWithoutAssets(new Generator(new CompilingFileHandler()).setTypedFields(true));
+    Gson gson = gson(classLoader, null);
+
+    Class<?> venueClass = classLoader.loadClass("com.test.Venue");
+    Object venue = gson.fromJson(TestUtils.readTestResource("venue_entry.json"), venueClass);
+    assertThat(get(venue, "capacity")).isEqualTo(300);
+    assertThat(get(venue, "rating")).isNull();
+    assertThat(get(venue, "open")).isEqualTo(true);
+    assertThat(get(venue, "location"))
+        .isEqualTo(classLoader.loadClass("com.test.LatLon").getConstructor(double.class,
+            double.class).newInstance(52.5, 13.4));
+    String json = gson.toJson(venue);
+    assertThat(gson.toJson(gson.fromJson(json, venueClass))).isEqualTo(json);
+
+    Class<?> postClass = classLoader.loadClass("com.test.Post");
+    Object post = gson.fromJson(TestUtils.readTestResource("post_entry.json"), postClass);
+    assertThat(get(post, "publishedAt")).isEqualTo(1496311200000L);
+    assertThat(gson.toJson(post)).contains("\"publishedAt\":\"2017-06-01T10:00:00.000Z\"");
+  }
+
+  @Test public void testTypedFieldsRoundTrip() throws Exception {
+    ClassLoader classLoader =
+        compileWithoutAssets(new Generator(new CompilingFileHandler()).setTypedFields(true));
+    Gson gson = gson(classLoader, null);
+
+    Class<?> venueClass = classLoader.loadClass("com.test.Venue");
+    Object venue = gson.fromJson(TestUtils.readTestResource("venue_entry.json"), venueClass);
+    Object venueCopy = gson.fromJson(gson.toJson(venue), venueClass);
+    for (String field : Arrays.asList("title", "location", "capacity", "rating", "open")) {
+      assertThat(get(venueCopy, field)).named(field).isEqualTo(get(venue, field));
+    }
+
+    Class<?> postClass = classLoader.loadClass("com.test.Post");
+    Object post = gson.fromJson(TestUtils.readTestResource("post_entry.json"), postClass);
+    Object postCopy = gson.fromJson(gson.toJson(post), postClass);
+    for (String field : Arrays.asList("title", "body", "publishedAt")) {
+      assertThat(get(postCopy, field)).named(field).isEqualTo(get(post, field));
+    }
+    assertThat(get(get(postCopy, "author"), "name")).isEqualTo("Jane");
+    List<?> tags = (List<?>) get(postCopy, "tags");
+    assertThat(tags).hasSize(2);
+    assertThat(get(tags.get(0), "label")).isEqualTo("News");
+    assertThat(get(get(tags.get(0), "category"), "title")).isEqualTo("General");
+  }
+
+  @Test public void testTypedFieldsParseDates() throws Exception {
+    ClassLoader classLoader =
+        compileWithoutAssets(new Generator(new CompilingFileHandler()).setTypedFields(true));
+    Gson gson = gson(classLoader, null);
+    Class<?> postClass = classLoader.loadClass("com.test.Post");
+    String entry = TestUtils.readTestResource("post_entry.json");
+
+    Map<String, Long> dates = new LinkedHashMap<String, Long>();
+    dates.put("2017-06-01", 1496275200000L);
+    dates.put("1969-12-31", -86400000L);
+    dates.put("2016-02-29T23:59", 1456790340000L);
+    dates.put("2017-06-01T10:00", 1496311200000L);
+    dates.put("2017-06-01T10:00:30", 1496311230000L);
+    dates.put("2017-06-01T10:00:30.5", 1496311230500L);
+    dates.put("2017-06-01T10:00:30.123456Z", 1496311230123L);
+    dates.put("2017-06-01T12:00+02:00", 1496311200000L);
+    dates.put("2017-06-01T05:30:00-0430", 1496311200000L);
+    for (Map.Entry<String, Long> date : dates.entrySet()) {
+      Object post = gson.fromJson(entry.replace("2017-06-01T10:00:00.000Z", date.getKey()),
+          postClass);
+      assertThat(get(post, "publishedAt")).named(date.getKey()).isEqualTo(date.getValue());
+    }
+
+    for (String invalid : Arrays.asList("", "2017-06", "2017-06-01T10", "2017-06-01 10:00",
+        "2017-13-01", "2017-06-01T10:00Y", "2017-06-01T10:00+2")) {
+      try {
+        gson.fromJson(entry.replace("2017-06-01T10:00:00.000Z", invalid), postClass);
+        fail(invalid);
+      } catch (JsonSyntaxException expected) {
+        assertThat(expected.getMessage()).isEqualTo("Invalid date: " + invalid);
+      }
+    }
+  }
+
+  @Test public void testTypedFieldsWithoutVault() throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    new Generator(fileHandler).setTypedFields(true).generate("com.test", ".", client);
+
+    String source = new String(fileHandler.getFiles().get("com/test/Venue.java"),
+        Charsets.UTF_8);
+    assertThat(source).contains("public class Venue {");
+    assertThat(source).contains("int capacity;");
+    assertThat(source).doesNotContain("Resource");
+    assertThat(source).doesNotContain("@ContentType");
+    assertThat(source).doesNotContain("@Field");
+  }
+
+  @Test public void testLazyLinksWithoutVault() throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    new Generator(fileHandler).setLazyLinks(true).generate("com.test", ".", client);
+
+    String source = new String(fileHandler.getFiles().get("com/test/Post.java"), Charsets.UTF_8);
+    assertThat(source).contains("public class Post {");
+    assertThat(source).contains("LazyLink<Author> author;");
+    assertThat(source).doesNotContain("Resource");
+    assertThat(source).doesNotContain("@ContentType");
+    assertThat(source).doesNotContain("@Field");
+  }
+
+  @Test public void testLazyLinksTypeAdapters() throws Exception {
+    final ClassLoader classLoader =
+        compileWithoutAssets(new Generator(new CompilingFileHandler()).setLazyLinks(true));
+    final List<String> resolved = new ArrayList<String>();
+    Object resolver = Proxy.newProxyInstance(classLoader,
+        new Class<?>[] { classLoader.loadClass("com.test.LinkResolver") },
+        new InvocationHandler() {
+          @Override public Object invoke(Object proxy, Method method, Object[] args)
+              throws Throwable {
+            resolved.add((String) args[1]);
+            return ((Class<?>) args[0]).newInstance();
+          }
+        });
+    Gson gson = gson(classLoader, resolver);
+
+    Class<?> postClass = classLoader.loadClass("com.test.Post");
+    Object post = gson.fromJson(TestUtils.readTestResource("post_entry.json"), postClass);
+    assertThat(resolved).isEmpty();
+
+    Object author = get(post, "author");
+    assertThat(author.getClass().getName()).isEqualTo("com.test.Author");
+    assertThat(get(post, "author")).isSameAs(author);
+    assertThat(resolved).containsExactly("jane");
+
+    List<?> tags = (List<?>) get(post, "tags");
+    assertThat(get(tags, "ids")).isEqualTo(Arrays.asList("news", null));
+    assertThat(tags.get(0).getClass().getName()).isEqualTo("com.test.Tag");
+    assertThat(resolved).containsExactly("jane", "news");
+
+    String json = gson.toJson(post);
+    assertThat(json).contains("\"author\":{\"sys\":{\"type\":\"Link\",\"linkType\":\"Entry\","
+        + "\"id\":\"jane\"}}");
+    assertThat(gson.toJson(gson.fromJson(json, postClass))).isEqualTo(json);
+  }
+
+  @Test public void testLazyLinksWriteIdsWithoutResolving() throws Exception {
+    final ClassLoader classLoader =
+        compileWithoutAssets(new Generator(new CompilingFileHandler()).setLazyLinks(true));
+    final List<String> resolved = new ArrayList<String>();
+    Object resolver = Proxy.newProxyInstance(classLoader,
+        new Class<?>[] { classLoader.loadClass("com.test.LinkResolver") },
+        new InvocationHandler() {
+          @Override public Object invoke(Object proxy, Method method, Object[] args)
+              throws Throwable {
+            resolved.add((String) args[1]);
+            return ((Class<?>) args[0]).newInstance();
+          }
+        });
+    Gson gson = gson(classLoader, resolver);
+
+    Class<?> postClass = classLoader.loadClass("com.test.Post");
+    Object post = gson.fromJson(TestUtils.readTestResource("post_entry.json"), postClass);
+    String json = gson.toJson(post);
+    assertThat(resolved).isEmpty();
+    assertThat(json).contains("\"author\":{\"sys\":{\"type\":\"Link\",\"linkType\":\"Entry\","
+        + "\"id\":\"jane\"}}");
+    assertThat(json).contains("\"id\":\"news\"");
+
+    Object copy = gson.fromJson(json, postClass);
+    assertThat(gson.toJson(copy)).isEqualTo(json);
+    assertThat(get(get(copy, "tags"), "ids")).isEqualTo(Arrays.asList("news", null));
+    get(copy, "author");
+    assertThat(resolved).containsExactly("jane");
+  }
+
+  @Test public void testTypeAdaptersCompile() throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    CompilingFileHandler fileHandler = new CompilingFileHandler();
+    new Generator(fileHandler).setTypeAdapters(true).generate("com.test", ".", client);
+
+    assertThat(fileHandler.compile().keySet())
+        .containsAllOf("com/test/Author.class", "com/test/AuthorTypeAdapter.class");
+  }
+
+  @Test public void testSingleFileTypeAdaptersCompile() throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    CompilingFileHandler fileHandler = new CompilingFileHandler();
+    new Generator(fileHandler).setSingleFile("Models").setTypeAdapters(true).setTypedFields(true)
+        .setLazyLinks(true)
+        .generate("com.test", ".", client);
+
+    assertThat(fileHandler.compile().keySet()).containsAllOf("com/test/Models$Post.class",
+        "com/test/Models$PostTypeAdapter.class", "com/test/Models$LatLon.class",
+        "com/test/Models$LazyLink.class", "com/test/Models$LinkResolver.class");
+  }
+
+  @Test public void testSingleFileIncremental() throws Exception {
+    String path = temporaryFolder.getRoot().getAbsolutePath();
+    Generator.FileHandler fileHandler = Mockito.spy(new Generator.DefaultFileHandler());
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+    Generator generator = new Generator(fileHandler, printer)
+        .setSingleFile("Models")
+        .setIncremental(true);
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    generator.generate("test", path, client);
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    generator.generate("test", path, client);
+
+    Mockito.verify(fileHandler, Mockito.times(1)).write(Mockito.any(JavaFile.class),
+        Mockito.eq(path));
+    Mockito.verify(printer).print("Nothing to do, 1 models are up to date.");
+    assertThat(new File(path, "test/Models.java").isFile()).isTrue();
+  }
+
+  @Test public void testDisableTypeAdaptersIncremental() throws Exception {
+    String path = temporaryFolder.getRoot().getAbsolutePath();
+    Generator generator = new Generator(null, Mockito.mock(Generator.Printer.class))
+        .setTypeAdapters(true)
+        .setIncremental(true);
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    generator.generate("test", path, client);
+    assertThat(new File(path, "test/ModelTypeAdapter.java").isFile()).isTrue();
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    generator.setTypeAdapters(false).generate("test", path, client);
+    assertThat(new File(path, "test/Model.java").isFile()).isTrue();
+    assertThat(new File(path, "test/ModelTypeAdapter.java").exists()).isFalse();
+  }
+
+  @Test public void testSwitchLayoutIncremental() throws Exception {
+    String path = temporaryFolder.getRoot().getAbsolutePath();
+    Generator generator = new Generator(null, Mockito.mock(Generator.Printer.class))
+        .setTypeAdapters(true)
+        .setIncremental(true);
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    generator.generate("test", path, client);
+    assertThat(new File(path, "test/Model.java").isFile()).isTrue();
+    assertThat(new File(path, "test/ModelTypeAdapter.java").isFile()).isTrue();
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    generator.setSingleFile("Models").generate("test", path, client);
+    assertThat(new File(path, "test/Model.java").exists()).isFalse();
+    assertThat(new File(path, "test/ModelTypeAdapter.java").exists()).isFalse();
+    assertThat(new File(path, "test/Models.java").isFile()).isTrue();
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    generator.setSingleFile(null).generate("test", path, client);
+    assertThat(new File(path, "test/Models.java").exists()).isFalse();
+    assertThat(Files.asCharSource(new File(path, "test/ModelTypeAdapter.java"), Charsets.UTF_8)
+        .read()).doesNotContain("Models");
+  }
+
+  static Object get(Object model, String field) throws Exception {
+    return model.getClass().getMethod(field).invoke(model);
+  }
+
+  static ClassLoader classLoader(final Map<String, byte[]> classes) {
+    return new ClassLoader(OutputTests.class.getClassLoader()) {
+      @Override protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classes.get(name.replace('.', '/') + ".class");
+        if (bytes == null) {
+          throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+      }
+    };
+  }
+
+  /**
+   * Generate models and type adapters for the linked content types, without asset fields as
+   * Vault assets need Android classes at runtime, and load the compiled classes.
+   */
+  ClassLoader compileWithoutAssets(Generator generator) throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    final List<CMAContentType> contentTypes = client.contentTypes().fetchAll().getItems();
+    for (CMAContentType contentType : contentTypes) {
+      Iterator<CMAField> fields = contentType.getFields().iterator();
+      while (fields.hasNext()) {
+        CMAField field = fields.next();
+        if ("Asset".equals(field.getLinkType()) || (field.getArrayItems() != null
+            && "Asset".equals(field.getArrayItems().get("linkType")))) {
+          fields.remove();
+        }
+      }
+    }
+
+    generator.setTypeAdapters(true).generate("com.test", ".", new ContentTypeSource() {
+      @Override public void read(PageConsumer consumer) throws Exception {
+        consumer.onPage(contentTypes);
+      }
+    });
+    return classLoader(((CompilingFileHandler) generator.fileHandler).compile());
+  }
+
+  /**
+   * @param resolver link resolver for adapters of lazy links, or null
+   */
+  static Gson gson(ClassLoader classLoader, Object resolver) throws Exception {
+    GsonBuilder builder = new GsonBuilder();
+    for (String model : Arrays.asList("Post", "Author", "Tag", "Category", "Venue", "Event")) {
+      Class<?> adapter = classLoader.loadClass("com.test." + model + "TypeAdapter");
+      builder.registerTypeAdapterFactory((TypeAdapterFactory) (resolver == null
+          ? adapter.getField("FACTORY").get(null)
+          : adapter.getMethod("factory", resolver.getClass().getInterfaces()[0])
+              .invoke(null, resolver)));
+    }
+    return builder.create();
+  }
+}
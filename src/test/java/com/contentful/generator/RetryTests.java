@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class RetryTests extends BaseTest {
+  @Test public void testRetriesRateLimitAndServerErrors() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(429)
+        .setHeader(ClientFactory.HEADER_RATE_LIMIT_RESET, "0"));
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+
+    ClientFactory clients = createClientFactory();
+    try {
+      new Generator(Mockito.mock(Generator.FileHandler.class), printer)
+          .generate("test", ".", clients.create("nospace", "noenv", "secret"));
+    } finally {
+      clients.close();
+    }
+
+    assertThat(server.getRequestCount()).isEqualTo(3);
+    Mockito.verify(printer).print("Generated 1 models, skipped 0 unchanged, deleted 0.");
+  }
+
+  @Test public void testWaitsForRateLimitReset() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(429)
+        .setHeader(ClientFactory.HEADER_RATE_LIMIT_RESET, "1"));
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+
+    ClientFactory clients = createClientFactory();
+    long start = System.nanoTime();
+    try {
+      new Generator(Mockito.mock(Generator.FileHandler.class),
+          Mockito.mock(Generator.Printer.class))
+          .generate("test", ".", clients.create("nospace", "noenv", "secret"));
+    } finally {
+      clients.close();
+    }
+
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isAtLeast(1000L);
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test public void testGivesUpAfterMaxRetries() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(429));
+    server.enqueue(new MockResponse().setResponseCode(429));
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+
+    ClientFactory clients = createClientFactory().setMaxRetries(1);
+    try {
+      new Generator(null, Mockito.mock(Generator.Printer.class))
+          .generate("test", ".", clients.create("nospace", "noenv", "secret"));
+      fail();
+    } catch (GeneratorException expected) {
+    } finally {
+      clients.close();
+    }
+
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test public void testTimeout() throws Exception {
+    server.enqueue(newSuccessResponse("all_content_types.json")
+        .setHeadersDelay(3, TimeUnit.SECONDS));
+
+    ClientFactory clients = createClientFactory()
+        .setMaxRetries(0)
+        .setTimeout(1, TimeUnit.SECONDS);
+    long start = System.nanoTime();
+    try {
+      new Generator(null, Mockito.mock(Generator.Printer.class))
+          .generate("test", ".", clients.create("nospace", "noenv", "secret"));
+      fail();
+    } catch (GeneratorException expected) {
+    } finally {
+      clients.close();
+    }
+
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(3000L);
+  }
+
+  private ClientFactory createClientFactory() {
+    return new ClientFactory()
+        .setCoreEndpoint(server.url("/").toString())
+        .setRetryDelay(1)
+        .setMaxConcurrentRequests(1);
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.Constants.CMAFieldType;
+import com.contentful.java.cma.model.CMAContentType;
+import com.contentful.java.cma.model.CMAField;
+import com.google.common.io.Files;
+import com.squareup.javapoet.JavaFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+
+public class SnapshotTests extends BaseTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void testReadsContentTypesResponse() throws Exception {
+    List<CMAContentType> contentTypes =
+        read(new File("src/test/resources/all_content_types_no_name.json"));
+
+    assertThat(contentTypes).hasSize(2);
+    assertThat(contentTypes.get(0).getName()).isEqualTo("Model");
+    assertThat(contentTypes.get(0).getId()).isEqualTo("ctid");
+    assertThat(contentTypes.get(1).getName()).isNull();
+  }
+
+  @Test public void testReadsSingleContentType() throws Exception {
+    List<CMAContentType> contentTypes = read(new File("src/test/resources/link_to_entry.json"));
+
+    assertThat(contentTypes).hasSize(1);
+    assertThat(contentTypes.get(0).getFields().get(0).getLinkType()).isEqualTo("Entry");
+    assertThat(contentTypes.get(0).getFields().get(0).getValidations()).isNotEmpty();
+  }
+
+  @Test public void testReadsDirectory() throws Exception {
+    File folder = temporaryFolder.newFolder();
+    copy("paged_content_types_2.json", new File(folder, "b.json"));
+    copy("paged_content_types_1.json", new File(folder, "a.json"));
+    assertThat(new File(folder, "ignored.txt").createNewFile()).isTrue();
+
+    List<CMAContentType> contentTypes = read(folder);
+
+    assertThat(contentTypes).hasSize(2);
+    assertThat(contentTypes.get(0).getId()).isEqualTo("post");
+    assertThat(contentTypes.get(1).getId()).isEqualTo("author");
+  }
+
+  @Test public void testDumpAndGenerate() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    File snapshot = temporaryFolder.newFile("snapshot.json");
+    SnapshotContentTypeSource.write(new ClientContentTypeSource(client, 1), snapshot);
+
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+    new Generator(fileHandler, null)
+        .generate("test", ".", new SnapshotContentTypeSource(snapshot));
+
+    ArgumentCaptor<JavaFile> captor = ArgumentCaptor.forClass(JavaFile.class);
+    Mockito.verify(fileHandler, Mockito.times(2)).write(captor.capture(), anyString());
+    // A snapshot is a single page, processed in order of content type ids
+    assertThat(captor.getAllValues().get(0).typeSpec.name).isEqualTo("Author");
+    assertThat(captor.getAllValues().get(1).typeSpec.name).isEqualTo("Post");
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test public void testReadsLikeClient() throws Exception {
+    server.enqueue(newSuccessResponse("linked_content_types.json"));
+    List<CMAContentType> fetched = read(new ClientContentTypeSource(client, 100));
+    List<CMAContentType> contentTypes =
+        read(new File("src/test/resources/linked_content_types.json"));
+
+    // Snapshots are read with plain Gson, which has to see the same content types as the client
+    assertThat(SnapshotContentTypeSource.GSON.toJsonTree(contentTypes))
+        .isEqualTo(SnapshotContentTypeSource.GSON.toJsonTree(fetched));
+    assertThat(server.getRequestCount()).isEqualTo(1);
+    HttpUrl url = server.takeRequest().getRequestUrl();
+    assertThat(url.queryParameter("skip")).isEqualTo("0");
+    assertThat(url.queryParameter("limit")).isEqualTo("100");
+
+    for (List<CMAContentType> read : Arrays.asList(fetched, contentTypes)) {
+      CMAContentType post = read.get(0);
+      assertThat(post.getId()).isEqualTo("post");
+      assertThat(post.getVersion()).isEqualTo(1);
+
+      CMAField author = post.getFields().get(2);
+      assertThat(author.getType()).isEqualTo(CMAFieldType.Link);
+      assertThat(author.isRequired()).isFalse();
+      assertThat(Generator.linkTarget(author)).isEqualTo("author");
+
+      CMAField tags = post.getFields().get(3);
+      assertThat(tags.getType()).isEqualTo(CMAFieldType.Array);
+      assertThat(tags.getArrayItems()).containsEntry("linkType", "Entry");
+      assertThat(Generator.linkTarget(tags)).isEqualTo("tag");
+
+      CMAField publishedAt = post.getFields().get(4);
+      assertThat(publishedAt.getType()).isEqualTo(CMAFieldType.Date);
+      assertThat(publishedAt.isRequired()).isTrue();
+    }
+  }
+
+  static List<CMAContentType> read(File file) throws Exception {
+    return read(new SnapshotContentTypeSource(file));
+  }
+
+  static List<CMAContentType> read(ContentTypeSource source) throws Exception {
+    final List<CMAContentType> result = new ArrayList<CMAContentType>();
+    source.read(new ContentTypeSource.PageConsumer() {
+      @Override public void onPage(List<CMAContentType> page) {
+        result.addAll(page);
+      }
+    });
+    return result;
+  }
+
+  static void copy(String resourceFileName, File target) throws Exception {
+    Files.copy(new File("src/test/resources/" + resourceFileName), target);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.google.gson.JsonObject;
+import com.squareup.javapoet.JavaFile;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import okhttp3.mockwebserver.MockResponse;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class StatsTests extends BaseTest {
+  @Test public void testCollectsStats() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+    Stats stats = new Stats();
+
+    ClientFactory clients = new ClientFactory()
+        .setCoreEndpoint(server.url("/").toString())
+        .setListener(stats);
+    try {
+      new Generator(fileHandler, printer)
+          .setListener(stats)
+          .setPageSize(1)
+          .generate("com.test", ".", clients.create("nospace", "noenv", "secret"));
+    } finally {
+      clients.close();
+    }
+
+    Mockito.verify(fileHandler, Mockito.times(2)).write(Mockito.any(JavaFile.class),
+        Mockito.eq("."));
+    assertThat(stats.pages).isEqualTo(2);
+    assertThat(stats.contentTypes).isEqualTo(2);
+    assertThat(stats.models).hasSize(2);
+    assertThat(stats.fields).isEqualTo(3);
+    assertThat(stats.bytes).isGreaterThan(0L);
+    assertThat(stats.requests).isEqualTo(2);
+    assertThat(stats.failedRequests).isEqualTo(0);
+    assertThat(stats.totalNanos).isGreaterThan(0L);
+    assertThat(stats.summary()).startsWith("Fetched 2 content types in 2 pages");
+
+    JsonObject json = stats.toJson();
+    assertThat(json.getAsJsonObject("http").get("requests").getAsInt()).isEqualTo(2);
+    assertThat(json.getAsJsonArray("models").size()).isEqualTo(2);
+  }
+
+  @Test public void testCountsFailedRequests() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404));
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+    Stats stats = new Stats();
+
+    ClientFactory clients = new ClientFactory()
+        .setCoreEndpoint(server.url("/").toString())
+        .setListener(stats);
+    try {
+      new Generator(null, printer)
+          .setListener(stats)
+          .generate("com.test", ".", clients.create("nospace", "noenv", "secret"));
+      fail();
+    } catch (GeneratorException expected) {
+    } finally {
+      clients.close();
+    }
+
+    assertThat(stats.requests).isEqualTo(1);
+    assertThat(stats.failedRequests).isEqualTo(1);
+    assertThat(stats.models).isEmpty();
+    assertThat(stats.totalNanos).isGreaterThan(0L);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.contentful.java.cma.model.CMAContentType;
+import com.squareup.javapoet.JavaFile;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+
+public class StreamingTests extends BaseTest {
+  @Test public void testStreamsContentTypes() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+
+    final List<Integer> pageSizes = new ArrayList<Integer>();
+    final List<String> ids = new ArrayList<String>();
+    ClientFactory clients = new ClientFactory().setCoreEndpoint(server.url("/").toString());
+    try {
+      clients.createStreamingSource("nospace", "noenv", "secret", 1).read(
+          new ContentTypeSource.PageConsumer() {
+            @Override public void onPage(List<CMAContentType> page) {
+              pageSizes.add(page.size());
+              for (CMAContentType contentType : page) {
+                ids.add(contentType.getId());
+              }
+            }
+          });
+    } finally {
+      clients.close();
+    }
+
+    assertThat(ids).containsExactly("post", "author").inOrder();
+    assertThat(pageSizes).containsExactly(1, 1);
+
+    RecordedRequest first = server.takeRequest();
+    assertThat(first.getPath())
+        .isEqualTo("/spaces/nospace/environments/noenv/content_types?skip=0&limit=1");
+    assertThat(first.getHeader("Authorization")).isEqualTo("Bearer secret");
+    assertThat(server.takeRequest().getPath()).endsWith("?skip=1&limit=1");
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test public void testStreamsWithCappedLimit() throws Exception {
+    server.enqueue(newSuccessResponse("paged_content_types_1.json"));
+    server.enqueue(newSuccessResponse("paged_content_types_2.json"));
+
+    final List<String> ids = new ArrayList<String>();
+    ClientFactory clients = new ClientFactory().setCoreEndpoint(server.url("/").toString());
+    try {
+      clients.createStreamingSource("nospace", "noenv", "secret", 10).read(
+          new ContentTypeSource.PageConsumer() {
+            @Override public void onPage(List<CMAContentType> page) {
+              for (CMAContentType contentType : page) {
+                ids.add(contentType.getId());
+              }
+            }
+          });
+    } finally {
+      clients.close();
+    }
+
+    assertThat(ids).containsExactly("post", "author").inOrder();
+    assertThat(server.takeRequest().getPath()).endsWith("?skip=0&limit=10");
+    assertThat(server.takeRequest().getPath()).endsWith("?skip=1&limit=10");
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test public void testGenerate() throws Exception {
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+
+    ClientFactory clients = new ClientFactory().setCoreEndpoint(server.url("/").toString());
+    try {
+      new Generator(fileHandler, Mockito.mock(Generator.Printer.class)).generate("test", ".",
+          clients.createStreamingSource("nospace", "noenv", "secret", 100));
+    } finally {
+      clients.close();
+    }
+
+    Mockito.verify(fileHandler).write(Mockito.any(JavaFile.class), anyString());
+  }
+
+  @Test public void testFailure() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404).setBody("{}"));
+    Generator.FileHandler fileHandler = Mockito.mock(Generator.FileHandler.class);
+
+    ClientFactory clients = new ClientFactory().setCoreEndpoint(server.url("/").toString());
+    try {
+      new Generator(fileHandler, Mockito.mock(Generator.Printer.class)).generate("test", ".",
+          clients.createStreamingSource("nospace", "noenv", "secret", 100));
+      fail();
+    } catch (GeneratorException e) {
+      assertThat(e.getMessage()).contains("HTTP 404");
+    } finally {
+      clients.close();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 Contentful GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.contentful.generator;
+
+import com.squareup.javapoet.JavaFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+
+public class WatcherTests extends BaseTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void testRegeneratesOnlyOnChange() throws Exception {
+    String path = temporaryFolder.getRoot().getAbsolutePath();
+    Generator.FileHandler fileHandler = Mockito.spy(new Generator.DefaultFileHandler());
+    Generator.Printer printer = Mockito.mock(Generator.Printer.class);
+    Watcher watcher = new Watcher(new Generator(fileHandler, printer), "test", path,
+        new ClientContentTypeSource(client), 1000);
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    assertThat(watcher.poll()).isTrue();
+    Mockito.verify(fileHandler, Mockito.times(1)).write(Mockito.any(JavaFile.class), anyString());
+
+    server.enqueue(newSuccessResponse("all_content_types.json"));
+    assertThat(watcher.poll()).isFalse();
+    Mockito.verify(fileHandler, Mockito.times(1)).write(Mockito.any(JavaFile.class), anyString());
+
+    server.enqueue(newSuccessResponse("all_content_types_updated.json"));
+    assertThat(watcher.poll()).isTrue();
+    Mockito.verify(printer).print("Content types changed, updating models.");
+    Mockito.verify(fileHandler, Mockito.times(2)).write(Mockito.any(JavaFile.class), anyString());
+    assertThat(new File(path, "test/Model.java").isFile()).isTrue();
+  }
+}
@@ -26,6 +26,10 @@ public class TestUtils {
   }
 
   public static String readTestResource(String fileName) throws IOException {
-    return FileUtils.readFileToString(new File("src/test/resources/" + fileName), "UTF-8");
+    return readFile(new File("src/test/resources/" + fileName));
+  }
+
+  public static String readFile(File file) throws IOException {
+    return FileUtils.readFileToString(file, "UTF-8");
   }
 }